@@ -2,8 +2,10 @@ package ro.mihaisturza.cryptoflow;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CryptoflowApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,215 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.ImageTile;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * Length-prefixed binary encoding of {@link ImageProcessingMessage}, replacing Java serialization.
+ *
+ * <pre>
+ * version        u8
+ * id             2 x i64 (most/least significant bits)
+ * operation      u8 (ordinal)
+ * mode           u8 (ordinal)
+ * payloadSize    i64
+ * publishedAt    i64 (epoch millis)
+ * tileCount      i32 (0 = whole image)
+ * tileIndex      i32
+ * tileOffset     i64
+ * tileLength     i64
+ * dataOffset     i64 (-1 = no parsed header, the remaining header fields are then zero)
+ * dibHeaderSize  i32
+ * width          i32
+ * height         i32
+ * bitsPerPixel   u16
+ * compression    i32
+ * key            u16 length + UTF-8
+ * imageName      u16 length + UTF-8 (0xFFFF = null)
+ * payloadRef     u16 length + UTF-8 (0xFFFF = null)
+ * payloadHash    u16 length + UTF-8 (0xFFFF = null)
+ * imageLength    i32 (-1 = no inline image)
+ * imageData      raw bytes
+ * </pre>
+ *
+ * The image bytes are copied once, straight into the AMQP body, and decoded as a
+ * slice of the received body.
+ */
+public class ImageMessageConverter implements MessageConverter {
+    public static final String CONTENT_TYPE = "application/x-cryptoflow-image";
+
+    private static final byte VERSION = 5;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int FIXED_HEADER_SIZE = 1 + 16 + 1 + 1 + 8 + 8 + 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + 2 + 4 + 4;
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof ImageProcessingMessage message)) {
+            throw new MessageConversionException("Cannot convert " + object.getClass().getName()
+                    + ", only ImageProcessingMessage is supported");
+        }
+
+        byte[] key = encodeString(message.getSymmetricKey());
+        byte[] imageName = encodeString(message.getImageName());
+        byte[] payloadReference = encodeString(message.getPayloadReference());
+        byte[] payloadHash = encodeString(message.getPayloadHash());
+        ByteBuffer image = message.getImageData() != null ? message.getImageData().duplicate() : null;
+
+        int size = FIXED_HEADER_SIZE + stringSize(key) + stringSize(imageName) + stringSize(payloadReference)
+                + stringSize(payloadHash) + (image != null ? image.remaining() : 0);
+        byte[] body = new byte[size];
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        buffer.put(VERSION);
+        buffer.putLong(message.getId().getMostSignificantBits());
+        buffer.putLong(message.getId().getLeastSignificantBits());
+        buffer.put((byte) message.getOperation().ordinal());
+        buffer.put((byte) message.getEncryptionMode().ordinal());
+        buffer.putLong(message.getPayloadSize());
+        buffer.putLong(message.getPublishedAt());
+        putTile(buffer, message.getTile());
+        putHeader(buffer, message.getHeader());
+        putString(buffer, key);
+        putString(buffer, imageName);
+        putString(buffer, payloadReference);
+        putString(buffer, payloadHash);
+        if (image != null) {
+            buffer.putInt(image.remaining());
+            buffer.put(image);
+        } else {
+            buffer.putInt(-1);
+        }
+
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(size);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        if (!CONTENT_TYPE.equals(contentType)) {
+            throw new MessageConversionException("Unsupported content type: " + contentType);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(message.getBody());
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new MessageConversionException("Unsupported message version: " + version);
+            }
+
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            Operation operation = Operation.values()[buffer.get()];
+            EncryptionMode mode = EncryptionMode.values()[buffer.get()];
+            long payloadSize = buffer.getLong();
+            long publishedAt = buffer.getLong();
+            ImageTile tile = getTile(buffer);
+            BmpHeader header = getHeader(buffer);
+            String key = getString(buffer);
+            String imageName = getString(buffer);
+            String payloadReference = getString(buffer);
+            String payloadHash = getString(buffer);
+
+            ByteBuffer image = null;
+            int imageLength = buffer.getInt();
+            if (imageLength >= 0) {
+                image = buffer.slice(buffer.position(), imageLength);
+            }
+
+            return new ImageProcessingMessage(id, image, payloadReference, payloadHash, payloadSize, key, operation,
+                    mode, imageName, publishedAt, tile, header);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new MessageConversionException("Malformed image processing message", e);
+        }
+    }
+
+    private static byte[] encodeString(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new MessageConversionException("String field too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] value) {
+        return 2 + (value != null ? value.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static void putTile(ByteBuffer buffer, ImageTile tile) {
+        if (tile == null) {
+            buffer.putInt(0).putInt(0).putLong(0).putLong(0);
+            return;
+        }
+
+        buffer.putInt(tile.getCount()).putInt(tile.getIndex()).putLong(tile.getOffset()).putLong(tile.getLength());
+    }
+
+    private static ImageTile getTile(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int index = buffer.getInt();
+        long offset = buffer.getLong();
+        long length = buffer.getLong();
+        return count > 0 ? new ImageTile(index, count, offset, length) : null;
+    }
+
+    private static void putHeader(ByteBuffer buffer, BmpHeader header) {
+        if (header == null) {
+            buffer.putLong(-1).putInt(0).putInt(0).putInt(0).putShort((short) 0).putInt(0);
+            return;
+        }
+
+        buffer.putLong(header.getDataOffset()).putInt(header.getDibHeaderSize()).putInt(header.getWidth())
+                .putInt(header.getHeight()).putShort((short) header.getBitsPerPixel())
+                .putInt(header.getCompression());
+    }
+
+    private static BmpHeader getHeader(ByteBuffer buffer) {
+        long dataOffset = buffer.getLong();
+        int dibHeaderSize = buffer.getInt();
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int bitsPerPixel = Short.toUnsignedInt(buffer.getShort());
+        int compression = buffer.getInt();
+        return dataOffset >= 0 ? new BmpHeader(dataOffset, dibHeaderSize, width, height, bitsPerPixel, compression)
+                : null;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
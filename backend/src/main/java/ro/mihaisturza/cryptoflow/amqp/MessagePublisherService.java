@@ -1,19 +1,113 @@
 package ro.mihaisturza.cryptoflow.amqp;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmCallback;
+
+import io.micrometer.core.instrument.Timer;
 import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
 
 @Service
 @Profile("backend")
 public class MessagePublisherService {
+    public static final int DEFAULT_PRIORITY = 0;
+
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${cryptoflow.scheduling.small-threshold:2097152}")
+    private long smallThreshold;
+
+    @Value("${cryptoflow.batch.confirm-timeout:10s}")
+    private Duration confirmTimeout;
+
     public void publishMessage(ImageProcessingMessage message) {
-        rabbitTemplate.convertAndSend(RabbitMQConfig.QUEUE_NAME, message);
+        publishMessage(message, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Routes the job to the queue of its size class; within a queue, higher priorities (0-9) are delivered first.
+     */
+    public void publishMessage(ImageProcessingMessage message, int priority) {
+        Timer.Sample sample = pipelineMetrics.start();
+        message.setPublishedAt(System.currentTimeMillis());
+        SizeClass sizeClass = SizeClass.of(message.getPayloadSize(), smallThreshold);
+        rabbitTemplate.convertAndSend(sizeClass.getQueueName(), message, withPriority(priority));
+        pipelineMetrics.stop(sample, PipelineMetrics.PUBLISH, message.getOperation(), message.getEncryptionMode(),
+                message.getPayloadSize());
+    }
+
+    /**
+     * Publishes the messages back to back on one channel and then waits once for the broker to confirm
+     * all of them, instead of paying a round trip per message. The confirms are matched to the messages by
+     * their publish sequence numbers, so if any message is nacked or not confirmed within
+     * cryptoflow.batch.confirm-timeout, the {@link UnconfirmedPublishException} lists just those. A message
+     * that timed out may still reach its queue later.
+     *
+     * The whole batch is timed as one publish.batch sample, tagged with the size of its largest message.
+     */
+    public void publishConfirmed(List<ImageProcessingMessage> messages, int priority) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = pipelineMetrics.start();
+        long publishedAt = System.currentTimeMillis();
+        NavigableMap<Long, ImageProcessingMessage> pending = new ConcurrentSkipListMap<>();
+        Set<ImageProcessingMessage> confirmed = ConcurrentHashMap.newKeySet();
+        ConfirmCallback acks = (deliveryTag, multiple) -> {
+            Map<Long, ImageProcessingMessage> acked = multiple ? pending.headMap(deliveryTag, true)
+                    : pending.subMap(deliveryTag, true, deliveryTag, true);
+            confirmed.addAll(acked.values());
+            acked.clear();
+        };
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (ImageProcessingMessage message : messages) {
+                    message.setPublishedAt(publishedAt);
+                    SizeClass sizeClass = SizeClass.of(message.getPayloadSize(), smallThreshold);
+                    pending.put(operations.execute(Channel::getNextPublishSeqNo), message);
+                    operations.convertAndSend(sizeClass.getQueueName(), message, withPriority(priority));
+                }
+                operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+                return null;
+            }, acks, null);
+        } catch (AmqpException e) {
+            List<ImageProcessingMessage> unconfirmed = messages.stream()
+                    .filter(message -> !confirmed.contains(message))
+                    .toList();
+            throw new UnconfirmedPublishException("The broker did not confirm " + unconfirmed.size() + " of "
+                    + messages.size() + " messages", unconfirmed, e);
+        }
+
+        ImageProcessingMessage first = messages.get(0);
+        pipelineMetrics.stop(sample, PipelineMetrics.PUBLISH_BATCH, first.getOperation(), first.getEncryptionMode(),
+                messages.stream().mapToLong(ImageProcessingMessage::getPayloadSize).max().getAsLong());
+    }
+
+    private static MessagePostProcessor withPriority(int priority) {
+        return amqpMessage -> {
+            amqpMessage.getMessageProperties().setPriority(priority);
+            return amqpMessage;
+        };
     }
 }
@@ -1,34 +1,94 @@
 package ro.mihaisturza.cryptoflow.amqp;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
-import org.springframework.amqp.support.converter.SerializerMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMQConfig {
-    public static final String QUEUE_NAME = "cryptoflow.processing";
+    public static final String SMALL_QUEUE_NAME = "cryptoflow.processing.small";
+    public static final String LARGE_QUEUE_NAME = "cryptoflow.processing.large";
+    public static final String DEAD_LETTER_EXCHANGE_NAME = "cryptoflow.processing.dlx";
+    public static final String DEAD_LETTER_QUEUE_NAME = "cryptoflow.processing.dead";
+    public static final String ATTEMPT_HEADER = "x-cryptoflow-attempt";
+    public static final int MAX_PRIORITY = 9;
 
+    private static final int MAX_QUEUE_BYTES = 500_000_000;
+
+    @Bean
+    public MessageConverter messageConverter() {
+        return new ImageMessageConverter();
+    }
+
+    @Bean
+    public Queue smallImageQueue() {
+        return processingQueue(SMALL_QUEUE_NAME);
+    }
+
+    @Bean
+    public Queue largeImageQueue() {
+        return processingQueue(LARGE_QUEUE_NAME);
+    }
+
+    /**
+     * Jobs that failed for good, were rejected as unreadable, expired or overflowed a processing queue.
+     * They are kept for inspection and replay until the queue's own size limit pushes the oldest out.
+     */
     @Bean
-    public SerializerMessageConverter messageConverter() {
-        SerializerMessageConverter converter = new SerializerMessageConverter();
+    public DirectExchange deadLetterExchange() {
+        return new DirectExchange(DEAD_LETTER_EXCHANGE_NAME, true, false);
+    }
 
-        converter.setAllowedListPatterns(
-                List.of("ro.mihaisturza.cryptoflow.*",
-                "java.lang.*",
-                "java.util.*",
-                "java.time.*")
-        );
+    @Bean
+    public Queue deadLetterQueue() {
+        return QueueBuilder.durable(DEAD_LETTER_QUEUE_NAME).withArgument("x-max-length-bytes", MAX_QUEUE_BYTES)
+                .build();
+    }
 
-        return converter;
+    @Bean
+    public Binding deadLetterBinding() {
+        return BindingBuilder.bind(deadLetterQueue()).to(deadLetterExchange()).with(DEAD_LETTER_QUEUE_NAME);
     }
 
+    /**
+     * One delay queue per size class and retry. Nothing consumes them: a parked job waits out the queue's
+     * TTL and is then dead-lettered back to its processing queue. A TTL per queue rather than per message
+     * keeps a long delay from holding up shorter ones behind it.
+     */
     @Bean
-    public Queue imageProcessingQueue() {
-        return QueueBuilder.durable(QUEUE_NAME).withArgument("x-max-length-bytes", 500_000_000)
-                .withArgument("x-message-ttl", 360000).build();
+    public Declarables retryQueues(RetryPolicy retryPolicy) {
+        List<Declarable> queues = new ArrayList<>();
+        for (SizeClass sizeClass : SizeClass.values()) {
+            for (int retry = 1; retry <= retryPolicy.getMaxRetries(); retry++) {
+                queues.add(QueueBuilder.durable(retryQueueName(sizeClass, retry))
+                        .ttl(Math.toIntExact(retryPolicy.delay(retry).toMillis()))
+                        .deadLetterExchange("")
+                        .deadLetterRoutingKey(sizeClass.getQueueName())
+                        .withArgument("x-max-length-bytes", MAX_QUEUE_BYTES)
+                        .build());
+            }
+        }
+        return new Declarables(queues);
+    }
+
+    public static String retryQueueName(SizeClass sizeClass, int retry) {
+        return sizeClass.getQueueName() + ".retry." + retry;
+    }
+
+    private static Queue processingQueue(String name) {
+        return QueueBuilder.durable(name).withArgument("x-max-length-bytes", MAX_QUEUE_BYTES)
+                .withArgument("x-message-ttl", 360000).maxPriority(MAX_PRIORITY)
+                .deadLetterExchange(DEAD_LETTER_EXCHANGE_NAME).deadLetterRoutingKey(DEAD_LETTER_QUEUE_NAME)
+                .build();
     }
 }
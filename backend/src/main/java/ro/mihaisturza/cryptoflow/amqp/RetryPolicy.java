@@ -0,0 +1,92 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import java.security.InvalidKeyException;
+import java.time.Duration;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ro.mihaisturza.cryptoflow.crypto.CryptoTimeoutException;
+import ro.mihaisturza.cryptoflow.job.FailureReason;
+import ro.mihaisturza.cryptoflow.staging.StagedPayloadException;
+
+/**
+ * Bounded retries for failed image jobs. A job that times out or crashes is parked in the delay queue of
+ * its next attempt and comes back to its processing queue once the delay expires; the delays grow by
+ * the multiplier with every retry. Invalid input is never retried, and timeouts get fewer attempts than
+ * crashes, since every one of them holds a processing slot for the whole timeout. A job out of attempts
+ * is dead-lettered.
+ *
+ * Both the backend and the consumer declare the delay queues, so the settings must match on every node.
+ */
+@Component
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final int maxTimeoutAttempts;
+    private final Duration initialDelay;
+    private final double multiplier;
+
+    public RetryPolicy(@Value("${cryptoflow.retry.max-attempts:4}") int maxAttempts,
+            @Value("${cryptoflow.retry.max-timeout-attempts:2}") int maxTimeoutAttempts,
+            @Value("${cryptoflow.retry.initial-delay:5s}") Duration initialDelay,
+            @Value("${cryptoflow.retry.multiplier:2.0}") double multiplier) {
+        if (maxAttempts < 1 || maxTimeoutAttempts < 1) {
+            throw new IllegalArgumentException("Retry attempts must be at least 1");
+        }
+        if (initialDelay.isNegative() || initialDelay.isZero() || multiplier < 1) {
+            throw new IllegalArgumentException("Retry delay must be positive and the multiplier at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.maxTimeoutAttempts = Math.min(maxTimeoutAttempts, maxAttempts);
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Classifies a failure by the first recognised exception in its cause chain; anything unrecognised is
+     * taken for a crash, which may succeed on another attempt.
+     */
+    public static FailureReason classify(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CryptoTimeoutException) {
+                return FailureReason.TIMEOUT;
+            }
+            if (cause instanceof IllegalArgumentException || cause instanceof UnsupportedOperationException
+                    || cause instanceof MessageConversionException || cause instanceof BadPaddingException
+                    || cause instanceof IllegalBlockSizeException || cause instanceof InvalidKeyException
+                    || cause instanceof StagedPayloadException) {
+                return FailureReason.INVALID_INPUT;
+            }
+        }
+        return FailureReason.CRASH;
+    }
+
+    /**
+     * Whether a job that failed its given (1-based) attempt for this reason gets another one.
+     */
+    public boolean shouldRetry(FailureReason reason, int attempt) {
+        return switch (reason) {
+            case INVALID_INPUT -> false;
+            case TIMEOUT -> attempt < maxTimeoutAttempts;
+            case CRASH -> attempt < maxAttempts;
+        };
+    }
+
+    /**
+     * Number of retries, and so of delay queues per size class.
+     */
+    public int getMaxRetries() {
+        return maxAttempts - 1;
+    }
+
+    /**
+     * How long the given (1-based) retry waits before it is redelivered.
+     */
+    public Duration delay(int retry) {
+        return Duration.ofMillis((long) (initialDelay.toMillis() * Math.pow(multiplier, retry - 1)));
+    }
+}
@@ -0,0 +1,22 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+/**
+ * Jobs are queued by payload size, so a thumbnail never waits behind a batch of 100 MB images.
+ */
+public enum SizeClass {
+    SMALL(RabbitMQConfig.SMALL_QUEUE_NAME), LARGE(RabbitMQConfig.LARGE_QUEUE_NAME);
+
+    private final String queueName;
+
+    SizeClass(String queueName) {
+        this.queueName = queueName;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public static SizeClass of(long payloadSize, long smallThreshold) {
+        return payloadSize <= smallThreshold ? SMALL : LARGE;
+    }
+}
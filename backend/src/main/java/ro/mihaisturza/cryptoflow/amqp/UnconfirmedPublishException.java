@@ -0,0 +1,24 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import java.util.List;
+
+import org.springframework.amqp.AmqpException;
+
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+
+/**
+ * A confirmed publish in which the broker nacked some messages or did not confirm them in time. The other
+ * messages of the batch are on their queues.
+ */
+public class UnconfirmedPublishException extends AmqpException {
+    private final transient List<ImageProcessingMessage> unconfirmed;
+
+    public UnconfirmedPublishException(String message, List<ImageProcessingMessage> unconfirmed, Throwable cause) {
+        super(message, cause);
+        this.unconfirmed = unconfirmed;
+    }
+
+    public List<ImageProcessingMessage> getUnconfirmed() {
+        return unconfirmed;
+    }
+}
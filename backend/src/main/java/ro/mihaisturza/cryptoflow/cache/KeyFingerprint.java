@@ -0,0 +1,47 @@
+package ro.mihaisturza.cryptoflow.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Salted HMAC-SHA256 of a symmetric key, so keys can be compared and used in
+ * cache keys without being stored or logged.
+ */
+@Component
+@Profile("consumer")
+public class KeyFingerprint {
+    private final SecretKeySpec salt;
+    // Computed for every job by the key schedule cache, so each thread keeps an initialised Mac
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    public KeyFingerprint(@Value("${cryptoflow.cache.fingerprint-salt}") String salt) {
+        if (salt == null || salt.isEmpty()) {
+            throw new IllegalStateException("cryptoflow.cache.fingerprint-salt (KEY_FINGERPRINT_SALT) must not be "
+                    + "empty; leave KEY_FINGERPRINT_SALT unset to use the default");
+        }
+        this.salt = new SecretKeySpec(salt.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    public String of(String key) {
+        // doFinal resets the Mac to its initialised state for the next call
+        return HexFormat.of().formatHex(macs.get().doFinal(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(salt);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available in this JVM", e);
+        }
+    }
+}
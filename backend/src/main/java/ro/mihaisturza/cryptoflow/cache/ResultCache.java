@@ -0,0 +1,136 @@
+package ro.mihaisturza.cryptoflow.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.storage.StoredImage;
+
+/**
+ * Remembers where the result of (input, key, operation, mode, engine) is stored,
+ * so a re-submitted job skips both the crypto work and the duplicate image write.
+ *
+ * A bounded in-memory LRU sits in front of the result_cache table, which is
+ * shared by all consumer nodes. Keys only contain a salted key fingerprint, and
+ * the crypto engine, since the engines' CBC outputs differ.
+ */
+@Component
+@Profile("consumer")
+public class ResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    @Autowired
+    private ResultCacheRepository resultCacheRepository;
+
+    @Autowired
+    private KeyFingerprint keyFingerprint;
+
+    private final boolean enabled;
+    private final String engineName;
+    private final Map<String, StoredImage> memoryTier;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ResultCache(@Value("${cryptoflow.cache.enabled:true}") boolean enabled,
+            @Value("${cryptoflow.cache.memory-entries:10000}") int memoryEntries,
+            @Value("${cryptoflow.crypto.engine:native}") String engineName,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.engineName = engineName;
+        this.memoryHits = meterRegistry.counter("cryptoflow.result.cache.requests", "result", "hit", "tier", "memory");
+        this.databaseHits = meterRegistry.counter("cryptoflow.result.cache.requests", "result", "hit", "tier", "database");
+        this.misses = meterRegistry.counter("cryptoflow.result.cache.requests", "result", "miss", "tier", "none");
+        this.evictions = meterRegistry.counter("cryptoflow.result.cache.evictions");
+
+        this.memoryTier = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredImage> eldest) {
+                boolean evict = size() > memoryEntries;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        });
+    }
+
+    public String cacheKey(ByteBuffer input, String key, Operation operation, EncryptionMode mode) {
+        MessageDigest digest = sha256();
+        digest.update(input.duplicate());
+        return cacheKey(HexFormat.of().formatHex(digest.digest()), key, operation, mode);
+    }
+
+    /**
+     * Same key as {@link #cacheKey(ByteBuffer, String, Operation, EncryptionMode)}, from the input's hex SHA-256,
+     * for inputs that are streamed rather than held in memory.
+     */
+    public String cacheKey(String contentHash, String key, Operation operation, EncryptionMode mode) {
+        return HexFormat.of().formatHex(sha256().digest((contentHash + ":" + keyFingerprint.of(key) + ":"
+                + operation + ":" + mode + ":" + engineName).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public Optional<StoredImage> lookup(String cacheKey) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        StoredImage cached = memoryTier.get(cacheKey);
+        if (cached != null) {
+            memoryHits.increment();
+            return Optional.of(cached);
+        }
+
+        Optional<StoredImage> persisted = resultCacheRepository.findById(cacheKey)
+                .map(entry -> new StoredImage(entry.getStorageKey(), entry.getImageSize()));
+        if (persisted.isPresent()) {
+            databaseHits.increment();
+            memoryTier.put(cacheKey, persisted.get());
+        } else {
+            misses.increment();
+        }
+        return persisted;
+    }
+
+    public void put(String cacheKey, StoredImage storedImage) {
+        if (!enabled) {
+            return;
+        }
+
+        memoryTier.put(cacheKey, storedImage);
+        try {
+            resultCacheRepository.save(new ResultCacheEntry(cacheKey, storedImage.getKey(), storedImage.getSize()));
+        } catch (DataIntegrityViolationException e) {
+            // Another node cached the same job concurrently; either result is valid
+            logger.debug("Result for cache key {} already persisted", cacheKey);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available in this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ro.mihaisturza.cryptoflow.cache;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "result_cache")
+@NoArgsConstructor
+@Getter
+@Setter
+public class ResultCacheEntry {
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey;
+
+    @Column(name = "image_size", nullable = false)
+    private long imageSize;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public ResultCacheEntry(String cacheKey, String storageKey, long imageSize) {
+        this.cacheKey = cacheKey;
+        this.storageKey = storageKey;
+        this.imageSize = imageSize;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,8 @@
+package ro.mihaisturza.cryptoflow.cache;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ResultCacheRepository extends JpaRepository<ResultCacheEntry, String> {
+}
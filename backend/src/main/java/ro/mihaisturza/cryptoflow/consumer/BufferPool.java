@@ -0,0 +1,195 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Direct buffers for image payloads and results, pooled in power-of-two size classes, so a steady stream
+ * of jobs reuses the same off-heap memory instead of allocating humongous heap arrays for every image.
+ *
+ * A job leases a buffer with {@link #acquire(int)} and closes the lease once it no longer needs the
+ * content. Released buffers are kept while the pool retains less than max-retained bytes; beyond that, and
+ * for requests larger than the largest class, they are left to the GC. A lease that becomes unreachable
+ * without being closed is logged and counted as a leak. Its buffer is not reused, since a view of it may
+ * still be live.
+ */
+@Component
+@Profile("consumer")
+public class BufferPool {
+    private static final Logger logger = LoggerFactory.getLogger(BufferPool.class);
+
+    private static final Cleaner leakDetector = Cleaner.create();
+    private static final int UNPOOLED = -1;
+
+    private final int minClassSize;
+    private final int maxClassSize;
+    private final long maxRetained;
+    private final ConcurrentLinkedDeque<ByteBuffer>[] classes;
+    private final AtomicLong retained = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter unpooled;
+    private final Counter leaks;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public BufferPool(@Value("${cryptoflow.consumer.buffer-pool.min-class:65536}") int minClassSize,
+            @Value("${cryptoflow.consumer.buffer-pool.max-class:268435456}") int maxClassSize,
+            @Value("${cryptoflow.consumer.buffer-pool.max-retained:536870912}") long maxRetained,
+            MeterRegistry meterRegistry) {
+        if (Integer.bitCount(minClassSize) != 1 || Integer.bitCount(maxClassSize) != 1
+                || minClassSize > maxClassSize) {
+            throw new IllegalArgumentException("Buffer size classes must be powers of two with min <= max: "
+                    + minClassSize + ", " + maxClassSize);
+        }
+
+        this.minClassSize = minClassSize;
+        this.maxClassSize = maxClassSize;
+        this.maxRetained = maxRetained;
+        int classCount = Integer.numberOfTrailingZeros(maxClassSize) - Integer.numberOfTrailingZeros(minClassSize) + 1;
+        this.classes = new ConcurrentLinkedDeque[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = new ConcurrentLinkedDeque<>();
+        }
+
+        this.hits = meterRegistry.counter("cryptoflow.buffer.pool.requests", "result", "hit");
+        this.misses = meterRegistry.counter("cryptoflow.buffer.pool.requests", "result", "miss");
+        this.unpooled = meterRegistry.counter("cryptoflow.buffer.pool.requests", "result", "unpooled");
+        this.leaks = meterRegistry.counter("cryptoflow.buffer.pool.leaks");
+        Gauge.builder("cryptoflow.buffer.pool.retained", retained, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        logger.info("Buffer pool with {} size classes from {} to {} bytes, retaining up to {} MB", classCount,
+                minClassSize, maxClassSize, maxRetained / (1024 * 1024));
+    }
+
+    /**
+     * Leases a direct buffer with position 0 and limit {@code size}. Its content is whatever the previous
+     * lease left behind.
+     */
+    public Lease acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative buffer size: " + size);
+        }
+
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer;
+        if (sizeClass == UNPOOLED) {
+            unpooled.increment();
+            buffer = ByteBuffer.allocateDirect(size);
+        } else {
+            buffer = classes[sizeClass].pollFirst();
+            if (buffer != null) {
+                retained.addAndGet(-buffer.capacity());
+                hits.increment();
+            } else {
+                misses.increment();
+                buffer = ByteBuffer.allocateDirect(minClassSize << sizeClass);
+            }
+        }
+
+        buffer.clear().limit(size);
+        return new Lease(buffer, sizeClass);
+    }
+
+    /**
+     * The direct memory a lease of this size takes: the capacity of its size class, or the size itself when
+     * it is larger than the largest class.
+     */
+    public int leaseCapacity(int size) {
+        int sizeClass = sizeClass(size);
+        return sizeClass == UNPOOLED ? size : minClassSize << sizeClass;
+    }
+
+    /**
+     * Bytes held by released buffers that are waiting to be reused.
+     */
+    public long getRetainedBytes() {
+        return retained.get();
+    }
+
+    private int sizeClass(int size) {
+        if (size > maxClassSize) {
+            return UNPOOLED;
+        }
+        int classSize = Math.max(minClassSize, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        return Integer.numberOfTrailingZeros(classSize) - Integer.numberOfTrailingZeros(minClassSize);
+    }
+
+    private void release(ByteBuffer buffer, int sizeClass) {
+        if (sizeClass == UNPOOLED) {
+            return;
+        }
+        if (retained.addAndGet(buffer.capacity()) > maxRetained) {
+            retained.addAndGet(-buffer.capacity());
+            return;
+        }
+        // Most recently used first, so a steady load keeps cycling through the same few buffers
+        classes[sizeClass].offerFirst(buffer);
+    }
+
+    public class Lease implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final int sizeClass;
+        private final LeakCheck leakCheck;
+        private final Cleaner.Cleanable cleanable;
+
+        private Lease(ByteBuffer buffer, int sizeClass) {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.leakCheck = new LeakCheck(buffer.capacity(), leaks);
+            this.cleanable = leakDetector.register(this, leakCheck);
+        }
+
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Hands the buffer back to the pool. The buffer and any views of it must not be used afterwards.
+         */
+        @Override
+        public void close() {
+            if (leakCheck.released.compareAndSet(false, true)) {
+                cleanable.clean();
+                release(buffer, sizeClass);
+            }
+        }
+    }
+
+    /**
+     * Runs when a lease is closed or collected; only the latter is a leak. Must not reference the lease.
+     */
+    private static class LeakCheck implements Runnable {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final int capacity;
+        private final Counter leaks;
+
+        LeakCheck(int capacity, Counter leaks) {
+            this.capacity = capacity;
+            this.leaks = leaks;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                leaks.increment();
+                logger.warn("A leased {} byte buffer was never released", capacity);
+            }
+        }
+    }
+}
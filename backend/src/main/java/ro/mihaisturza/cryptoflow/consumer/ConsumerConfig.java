@@ -0,0 +1,61 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("consumer")
+public class ConsumerConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerConfig.class);
+
+    public static final String SMALL_CONTAINER_FACTORY = "smallImageListenerContainerFactory";
+    public static final String LARGE_CONTAINER_FACTORY = "largeImageListenerContainerFactory";
+
+    @Bean(SMALL_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory smallImageListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${cryptoflow.consumer.small.concurrency:0}") int concurrency,
+            @Value("${cryptoflow.consumer.small.prefetch:4}") int prefetch) {
+        return imageListenerContainerFactory(configurer, connectionFactory, "small", concurrency, prefetch);
+    }
+
+    @Bean(LARGE_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory largeImageListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${cryptoflow.consumer.large.concurrency:0}") int concurrency,
+            @Value("${cryptoflow.consumer.large.prefetch:1}") int prefetch) {
+        return imageListenerContainerFactory(configurer, connectionFactory, "large", concurrency, prefetch);
+    }
+
+    /**
+     * Listener container for one size class of image jobs: one consumer per core by default, a small
+     * prefetch so a node never holds more unprocessed images than it can work on,
+     * and manual acks so a job is only removed from the queue once its result is stored.
+     */
+    private static SimpleRabbitListenerContainerFactory imageListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            String sizeClass, int concurrency, int prefetch) {
+        int consumers = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(consumers);
+        factory.setPrefetchCount(prefetch);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setDefaultRequeueRejected(false);
+
+        logger.info("Image listener for {} jobs using {} consumers with prefetch {}", sizeClass, consumers, prefetch);
+        return factory;
+    }
+}
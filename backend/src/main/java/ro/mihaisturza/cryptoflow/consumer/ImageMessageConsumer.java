@@ -1,15 +1,46 @@
 package ro.mihaisturza.cryptoflow.consumer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.rabbitmq.client.Channel;
+
+import io.micrometer.core.instrument.Timer;
 import ro.mihaisturza.cryptoflow.amqp.RabbitMQConfig;
+import ro.mihaisturza.cryptoflow.amqp.RetryPolicy;
+import ro.mihaisturza.cryptoflow.amqp.SizeClass;
+import ro.mihaisturza.cryptoflow.cache.ResultCache;
+import ro.mihaisturza.cryptoflow.crypto.CryptoEngine;
 import ro.mihaisturza.cryptoflow.crypto.CryptoService;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
 import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.job.FailureReason;
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.staging.StagedPayloadException;
+import ro.mihaisturza.cryptoflow.staging.StagingStore;
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+import ro.mihaisturza.cryptoflow.storage.StoredImage;
+import ro.mihaisturza.cryptoflow.tiling.TileProcessor;
 
 @Component
 @Profile("consumer")
@@ -22,12 +53,91 @@ public class ImageMessageConsumer {
         @Autowired
         private ProcessedImageRepository processedImageRepository;
 
-        @RabbitListener(queues = RabbitMQConfig.QUEUE_NAME)
-        public void processImageMessage(ImageProcessingMessage message) {
-                logger.info("Received image processing message for image: {} (ID: {})",
-                                message.getImageName(), message.getId());
+        @Autowired
+        private StagingStore stagingStore;
+
+        @Autowired
+        private ImageStorage imageStorage;
+
+        @Autowired
+        private MemoryAdmissionController admissionController;
+
+        @Autowired
+        private ResultCache resultCache;
+
+        @Autowired
+        private PipelineMetrics pipelineMetrics;
+
+        @Autowired
+        private TileProcessor tileProcessor;
+
+        @Autowired
+        private JobStatusService jobStatusService;
+
+        @Autowired
+        private WeightedFairScheduler scheduler;
+
+        @Autowired
+        private BufferPool bufferPool;
+
+        @Autowired
+        private RetryPolicy retryPolicy;
+
+        @Autowired
+        private RabbitTemplate rabbitTemplate;
+
+        // Staged payloads at least this large are streamed through the engine instead of being read into memory
+        @Value("${cryptoflow.consumer.streaming-threshold:67108864}")
+        private long streamingThreshold;
+
+        @Value("${cryptoflow.crypto.chunk-size:1048576}")
+        private int streamChunkSize;
+
+        @RabbitListener(queues = RabbitMQConfig.SMALL_QUEUE_NAME, containerFactory = ConsumerConfig.SMALL_CONTAINER_FACTORY)
+        public void processSmallImageMessage(ImageProcessingMessage message, Channel channel,
+                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                        @Header(name = RabbitMQConfig.ATTEMPT_HEADER, required = false) Integer attempt)
+                        throws IOException {
+                processImageMessage(message, SizeClass.SMALL, attempt != null ? attempt : 1, channel, deliveryTag);
+        }
+
+        @RabbitListener(queues = RabbitMQConfig.LARGE_QUEUE_NAME, containerFactory = ConsumerConfig.LARGE_CONTAINER_FACTORY)
+        public void processLargeImageMessage(ImageProcessingMessage message, Channel channel,
+                        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                        @Header(name = RabbitMQConfig.ATTEMPT_HEADER, required = false) Integer attempt)
+                        throws IOException {
+                processImageMessage(message, SizeClass.LARGE, attempt != null ? attempt : 1, channel, deliveryTag);
+        }
+
+        private void processImageMessage(ImageProcessingMessage message, SizeClass sizeClass, int attempt,
+                        Channel channel, long deliveryTag) throws IOException {
+                logger.info("Received image processing message for image: {} (ID: {}, attempt {})",
+                                message.getImageName(), message.getId(), attempt);
+
+                Operation operation = message.getOperation();
+                EncryptionMode mode = message.getEncryptionMode();
+                long payloadSize = message.getPayloadSize();
+                if (message.getPublishedAt() > 0) {
+                        pipelineMetrics.record(PipelineMetrics.QUEUE_DWELL, operation, mode, payloadSize,
+                                        Duration.ofMillis(System.currentTimeMillis() - message.getPublishedAt()));
+                }
+
+                boolean streamed = streamsPayload(message);
+                try (MemoryAdmissionController.Admission admission = admissionController
+                                .admit(reservation(message, streamed))) {
+                        jobStatusService.processing(message.getId());
+                        if (message.getTile() != null) {
+                                boolean assembled;
+                                try (WeightedFairScheduler.Slot slot = scheduler.acquire(sizeClass)) {
+                                        assembled = tileProcessor.process(message);
+                                }
+                                if (assembled) {
+                                        jobStatusService.done(message.getId());
+                                }
+                                channel.basicAck(deliveryTag, false);
+                                return;
+                        }
 
-                try {
                         String originalExtension = "";
                         String originalName = message.getImageName();
                         if (originalName != null && originalName.contains(".")) {
@@ -35,29 +145,272 @@ public class ImageMessageConsumer {
                         }
                         String uuidFileName = message.getId().toString() + originalExtension;
 
-                        // Process the image using the crypto service
-                        byte[] processedImage = cryptoService.processImage(
-                                        message.getImageData(),
+                        if (streamed) {
+                                StoredImage storedImage = processStreamed(message, sizeClass, uuidFileName);
+                                saveProcessedImage(message, storedImage);
+                                channel.basicAck(deliveryTag, false);
+                                deleteStagedPayload(message);
+                                return;
+                        }
+
+                        // A staged payload and the result live in pooled direct buffers until the job is acked
+                        Timer.Sample readSample = pipelineMetrics.start();
+                        try (BufferPool.Lease stagedPayload = readStagedPayload(message)) {
+                                ByteBuffer payload = stagedPayload != null ? stagedPayload.getBuffer()
+                                                : message.getImageData();
+                                pipelineMetrics.stop(readSample, PipelineMetrics.PAYLOAD_READ, operation, mode,
+                                                payloadSize);
+
+                                String cacheKey = resultCache.cacheKey(payload, message.getSymmetricKey(), operation,
+                                                mode);
+
+                                StoredImage storedImage = resultCache.lookup(cacheKey).orElse(null);
+                                if (storedImage != null) {
+                                        logger.info("Reusing cached result for image: {} (ID: {})",
+                                                        message.getImageName(), message.getId());
+                                } else {
+                                        try (BufferPool.Lease output = bufferPool
+                                                        .acquire(CryptoEngine.maxOutputSize(payload.remaining()))) {
+                                                storedImage = processAndStore(message, payload, output.getBuffer(),
+                                                                sizeClass, uuidFileName);
+                                        }
+                                        resultCache.put(cacheKey, storedImage);
+                                }
+
+                                saveProcessedImage(message, storedImage);
+
+                                // Only acknowledge once the result is committed, so a crash mid-job redelivers it
+                                channel.basicAck(deliveryTag, false);
+                        }
+                        deleteStagedPayload(message);
+                } catch (InterruptedException e) {
+                        // Shutting down while waiting for memory budget: hand the job back to the broker
+                        Thread.currentThread().interrupt();
+                        channel.basicNack(deliveryTag, false, true);
+                } catch (Exception e) {
+                        handleFailure(message, sizeClass, attempt, channel, deliveryTag, e);
+                }
+        }
+
+        /**
+         * Parks a job that timed out or crashed in the delay queue of its next attempt, or dead-letters it
+         * once it is out of attempts or its input is invalid. Either way the delivery is settled here, so a
+         * poison image never goes straight back to the head of its queue.
+         */
+        private void handleFailure(ImageProcessingMessage message, SizeClass sizeClass, int attempt,
+                        Channel channel, long deliveryTag, Exception failure) throws IOException {
+                FailureReason reason = RetryPolicy.classify(failure);
+                if (retryPolicy.shouldRetry(reason, attempt)) {
+                        logger.warn("Attempt {} at image: {} (ID: {}) failed ({}), retrying in {}", attempt,
+                                        message.getImageName(), message.getId(), reason,
+                                        retryPolicy.delay(attempt), failure);
+                        try {
+                                scheduleRetry(message, sizeClass, attempt);
+                                channel.basicAck(deliveryTag, false);
+                                jobStatusService.retrying(message.getId(), reason, attempt, failure.getMessage());
+                                return;
+                        } catch (AmqpException e) {
+                                logger.error("Failed to schedule retry of image: {} (ID: {})",
+                                                message.getImageName(), message.getId(), e);
+                        }
+                } else {
+                        logger.error("Failed to process image: {} (ID: {}) after {} attempt(s) ({})",
+                                        message.getImageName(), message.getId(), attempt, reason, failure);
+                }
+
+                // Dead-lettered by the processing queue. A staged payload is left to the staging sweeper, so the
+                // job can still be replayed from the dead letter queue within the staging retention.
+                channel.basicReject(deliveryTag, false);
+                jobStatusService.failed(message.getId(), reason, attempt, failure.getMessage());
+        }
+
+        /**
+         * Republishes the job, stamped with its next attempt, to the delay queue of this retry. It comes back
+         * at the lowest priority, so retries queue up behind fresh jobs rather than ahead of them.
+         */
+        private void scheduleRetry(ImageProcessingMessage message, SizeClass sizeClass, int attempt) {
+                Duration delay = retryPolicy.delay(attempt);
+                // Queue dwell is measured from when the retry becomes deliverable, not from the first publish
+                message.setPublishedAt(System.currentTimeMillis() + delay.toMillis());
+                rabbitTemplate.convertAndSend("", RabbitMQConfig.retryQueueName(sizeClass, attempt), message,
+                                amqpMessage -> {
+                                        amqpMessage.getMessageProperties().setHeader(RabbitMQConfig.ATTEMPT_HEADER,
+                                                        attempt + 1);
+                                        amqpMessage.getMessageProperties().setPriority(0);
+                                        return amqpMessage;
+                                });
+        }
+
+        private StoredImage processAndStore(ImageProcessingMessage message, ByteBuffer payload, ByteBuffer output,
+                        SizeClass sizeClass, String uuidFileName) throws IOException, InterruptedException {
+                Operation operation = message.getOperation();
+                EncryptionMode mode = message.getEncryptionMode();
+                long payloadSize = message.getPayloadSize();
+
+                ByteBuffer processedImage;
+                try (WeightedFairScheduler.Slot slot = scheduler.acquire(sizeClass)) {
+                        Timer.Sample cryptoSample = pipelineMetrics.start();
+                        processedImage = cryptoService.processImage(
+                                        payload,
+                                        output,
+                                        message.getHeader(),
                                         message.getSymmetricKey(),
-                                        message.getOperation(),
-                                        message.getEncryptionMode(),
+                                        operation,
+                                        mode,
                                         uuidFileName);
+                        pipelineMetrics.stop(cryptoSample, PipelineMetrics.CRYPTO, operation, mode, payloadSize);
+                }
+
+                logger.info("Successfully processed image: {} (ID: {}). Result size: {} bytes",
+                                message.getImageName(), message.getId(), processedImage.remaining());
 
-                        logger.info("Successfully processed image: {} (ID: {}). Result size: {} bytes",
-                                        message.getImageName(), message.getId(), processedImage.length);
+                Timer.Sample storageSample = pipelineMetrics.start();
+                StoredImage storedImage = imageStorage.store(processedImage);
+                pipelineMetrics.stop(storageSample, PipelineMetrics.STORAGE_WRITE, operation, mode, payloadSize);
+                return storedImage;
+        }
 
-                        ProcessedImage processedImageEntity = new ProcessedImage(
-                                        message.getId().toString(),
-                                        message.getImageName(),
-                                        processedImage,
-                                        message.getOperation().name(),
-                                        message.getEncryptionMode().name());
+        /**
+         * The memory a job holds at once. A streamed job holds a chunk of input and a chunk of output and a tile
+         * its input and result, all on the heap. Any other job holds its result, and a staged payload, in pooled
+         * buffers of their size class, which can be close to twice their size.
+         */
+        private long reservation(ImageProcessingMessage message, boolean streamed) {
+                long payloadSize = message.getPayloadSize();
+                if (streamed) {
+                        return 2L * streamChunkSize;
+                }
+                if (message.getTile() != null) {
+                        return 2 * payloadSize;
+                }
+                int size = Math.toIntExact(payloadSize);
+                long input = message.getPayloadReference() != null ? bufferPool.leaseCapacity(size) : size;
+                return input + bufferPool.leaseCapacity(CryptoEngine.maxOutputSize(size));
+        }
 
-                        ProcessedImage savedImage = processedImageRepository.save(processedImageEntity);
-                        logger.info("Saved processed image to database with ID: {}", savedImage.getId());
-                } catch (Exception e) {
-                        logger.error("Failed to process image: {} (ID: {})",
-                                        message.getImageName(), message.getId(), e);
+        private boolean streamsPayload(ImageProcessingMessage message) {
+                if (message.getPayloadReference() == null || message.getTile() != null) {
+                        return false;
+                }
+                // Beyond what a buffer can hold streaming is the only way; an engine that can't stream fails the job
+                long size = message.getPayloadSize();
+                return size > CryptoEngine.MAX_IMAGE_SIZE
+                                || (size >= streamingThreshold && cryptoService.supportsStreaming());
+        }
+
+        /**
+         * Streams the staged payload through the engine into storage, a chunk at a time. The payload's hash is
+         * checked when its last byte is read, which fails the store before anything is kept.
+         */
+        private StoredImage processStreamed(ImageProcessingMessage message, SizeClass sizeClass, String uuidFileName)
+                        throws IOException, InterruptedException {
+                Operation operation = message.getOperation();
+                EncryptionMode mode = message.getEncryptionMode();
+                long payloadSize = message.getPayloadSize();
+                if (!cryptoService.supportsStreaming()) {
+                        throw new IllegalArgumentException(String.format(
+                                        "Image of %d bytes is larger than the %d bytes the crypto engine can process",
+                                        payloadSize, CryptoEngine.MAX_IMAGE_SIZE));
+                }
+
+                // Staged payloads are hashed on upload, so the cache key needs no pass over the content
+                String cacheKey = message.getPayloadHash() != null
+                                ? resultCache.cacheKey(message.getPayloadHash(), message.getSymmetricKey(), operation,
+                                                mode)
+                                : null;
+                if (cacheKey != null) {
+                        StoredImage cached = resultCache.lookup(cacheKey).orElse(null);
+                        if (cached != null) {
+                                logger.info("Reusing cached result for image: {} (ID: {})", message.getImageName(),
+                                                message.getId());
+                                return cached;
+                        }
+                }
+
+                StoredImage storedImage;
+                // Reading, crypto and storage take turns chunk by chunk, so the slot is held for the whole transfer
+                try (WeightedFairScheduler.Slot slot = scheduler.acquire(sizeClass);
+                                InputStream payload = PayloadHash.verifying(
+                                                stagingStore.open(message.getPayloadReference()),
+                                                message.getPayloadHash(), message.getPayloadReference());
+                                InputStream result = cryptoService.processImageStream(payload, payloadSize,
+                                                message.getHeader(), message.getSymmetricKey(), operation, mode,
+                                                uuidFileName)) {
+                        Timer.Sample streamSample = pipelineMetrics.start();
+                        storedImage = imageStorage.store(result);
+                        pipelineMetrics.stop(streamSample, PipelineMetrics.CRYPTO_STREAM, operation, mode,
+                                        payloadSize);
+                }
+
+                logger.info("Successfully streamed image: {} (ID: {}). Result size: {} bytes",
+                                message.getImageName(), message.getId(), storedImage.getSize());
+                if (cacheKey != null) {
+                        resultCache.put(cacheKey, storedImage);
+                }
+                return storedImage;
+        }
+
+        private void saveProcessedImage(ImageProcessingMessage message, StoredImage storedImage) {
+                ProcessedImage processedImageEntity = new ProcessedImage(
+                                message.getId().toString(),
+                                message.getImageName(),
+                                storedImage.getKey(),
+                                storedImage.getSize(),
+                                message.getOperation().name(),
+                                message.getEncryptionMode().name());
+
+                Timer.Sample saveSample = pipelineMetrics.start();
+                ProcessedImage savedImage = processedImageRepository.save(processedImageEntity);
+                pipelineMetrics.stop(saveSample, PipelineMetrics.DB_SAVE, message.getOperation(),
+                                message.getEncryptionMode(), message.getPayloadSize());
+                logger.info("Saved processed image to database with ID: {}", savedImage.getId());
+                jobStatusService.done(message.getId());
+        }
+
+        /**
+         * Reads a staged payload into a pooled buffer and checks its hash. Returns null for inline payloads,
+         * which are already a slice of the message body.
+         */
+        private BufferPool.Lease readStagedPayload(ImageProcessingMessage message) throws IOException {
+                if (message.getPayloadReference() == null) {
+                        return null;
+                }
+
+                BufferPool.Lease lease = bufferPool.acquire(Math.toIntExact(message.getPayloadSize()));
+                try {
+                        ByteBuffer payload = lease.getBuffer();
+                        try (ReadableByteChannel content = Channels.newChannel(
+                                        stagingStore.open(message.getPayloadReference()))) {
+                                while (payload.hasRemaining() && content.read(payload) >= 0) {
+                                        // keep reading until the buffer is full or the payload ends
+                                }
+                        }
+                        if (payload.hasRemaining()) {
+                                throw new StagedPayloadException("Staged payload " + message.getPayloadReference()
+                                                + " is shorter than " + message.getPayloadSize() + " bytes");
+                        }
+                        payload.flip();
+
+                        MessageDigest digest = PayloadHash.newDigest();
+                        digest.update(payload.duplicate());
+                        PayloadHash.verify(digest, message.getPayloadHash(), message.getPayloadReference());
+                        return lease;
+                } catch (IOException | RuntimeException e) {
+                        lease.close();
+                        throw e;
+                }
+        }
+
+        private void deleteStagedPayload(ImageProcessingMessage message) {
+                // Tiles share the staged image; the reducer deletes it once the job is assembled
+                if (message.getPayloadReference() == null || message.getTile() != null) {
+                        return;
+                }
+
+                try {
+                        stagingStore.delete(message.getPayloadReference());
+                } catch (IOException e) {
+                        logger.warn("Failed to delete staged payload {}", message.getPayloadReference(), e);
                 }
         }
 }
@@ -0,0 +1,107 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Limits the image bytes in flight on this node.
+ *
+ * Each job reserves the memory it will hold at once before it starts: the
+ * {@link BufferPool#leaseCapacity(int) rounded-up capacity} of its payload and
+ * result buffers, or the heap arrays of a tile or a streamed chunk. Payloads and
+ * results live in direct memory, where the pool also keeps up to max-retained
+ * bytes of idle buffers, so the budget is a share of the direct memory limit
+ * less those, and never more than the same share of the heap. Listener threads
+ * block here while the budget is exhausted; since their messages stay unacked,
+ * the broker stops delivering to this node instead of it running out of memory.
+ */
+@Component
+@Profile("consumer")
+public class MemoryAdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryAdmissionController.class);
+
+    private static final int PERMIT_SIZE = 1024; // Semaphore permits are KiB so large heaps fit in an int
+
+    private final Semaphore budget;
+    private final int totalPermits;
+
+    @Autowired
+    public MemoryAdmissionController(@Value("${cryptoflow.consumer.memory-fraction:0.6}") double memoryFraction,
+            @Value("${cryptoflow.consumer.buffer-pool.max-retained:536870912}") long maxRetained) {
+        this(budgetBytes(memoryFraction, maxRetained));
+    }
+
+    MemoryAdmissionController(long budgetBytes) {
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, budgetBytes / PERMIT_SIZE);
+        this.budget = new Semaphore(totalPermits, true);
+
+        logger.info("Admitting up to {} MB of in-flight image data", budgetBytes / (1024 * 1024));
+    }
+
+    /**
+     * Blocks until the given bytes fit in the memory budget. A job larger than the
+     * whole budget is admitted alone.
+     */
+    public Admission admit(long bytes) throws InterruptedException {
+        long permits = (bytes + PERMIT_SIZE - 1) / PERMIT_SIZE;
+        int reserved = (int) Math.max(1, Math.min(totalPermits, permits));
+
+        if (!budget.tryAcquire(reserved)) {
+            logger.info("Waiting for {} KB of memory budget ({} KB available)", reserved, budget.availablePermits());
+            budget.acquire(reserved);
+        }
+        return new Admission(reserved);
+    }
+
+    private static long budgetBytes(double memoryFraction, long maxRetained) {
+        long directMemory = directMemoryLimit();
+        if (maxRetained >= directMemory) {
+            throw new IllegalStateException("cryptoflow.consumer.buffer-pool.max-retained (" + maxRetained
+                    + " bytes) leaves none of the " + directMemory + " bytes of direct memory to running jobs");
+        }
+        long available = Math.min(Runtime.getRuntime().maxMemory(), directMemory - maxRetained);
+        return (long) (available * memoryFraction);
+    }
+
+    /**
+     * -XX:MaxDirectMemorySize, which defaults to the max heap when it is not set.
+     */
+    private static long directMemoryLimit() {
+        try {
+            HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long configured = Long.parseLong(diagnostics.getVMOption("MaxDirectMemorySize").getValue());
+            if (configured > 0) {
+                return configured;
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot read MaxDirectMemorySize, assuming the max heap", e);
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    public class Admission implements AutoCloseable {
+        private final int permits;
+        private boolean released;
+
+        private Admission(int permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                budget.release(permits);
+            }
+        }
+    }
+}
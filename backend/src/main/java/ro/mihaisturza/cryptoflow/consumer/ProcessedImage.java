@@ -5,13 +5,16 @@ import java.time.LocalDateTime;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "processed_images")
+@Table(name = "processed_images", indexes = {
+        @Index(name = "idx_processed_images_processed_at", columnList = "processed_at, id")
+})
 @NoArgsConstructor
 @Getter
 @Setter
@@ -22,8 +25,11 @@ public class ProcessedImage {
     @Column(name = "image_name", nullable = false)
     private String imageName;
 
-    @Column(name = "image_data", nullable = false, columnDefinition = "LONGBLOB")
-    private byte[] imageData;
+    @Column(name = "storage_key", nullable = false, length = 64)
+    private String storageKey; // key of the image bytes in the ImageStorage
+
+    @Column(name = "image_size", nullable = false)
+    private long imageSize;
 
     @Column(name = "operation", nullable = false)
     private String operation;
@@ -34,10 +40,12 @@ public class ProcessedImage {
     @Column(name = "processed_at", nullable = false)
     private LocalDateTime processedAt;
 
-    public ProcessedImage(String id, String imageName, byte[] imageData, String operation, String encryptionMode) {
+    public ProcessedImage(String id, String imageName, String storageKey, long imageSize, String operation,
+            String encryptionMode) {
         this.id = id;
         this.imageName = imageName;
-        this.imageData = imageData;
+        this.storageKey = storageKey;
+        this.imageSize = imageSize;
         this.operation = operation;
         this.encryptionMode = encryptionMode;
         this.processedAt = LocalDateTime.now();
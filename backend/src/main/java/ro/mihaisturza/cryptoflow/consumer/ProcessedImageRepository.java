@@ -1,11 +1,30 @@
 package ro.mihaisturza.cryptoflow.consumer;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ProcessedImageRepository extends JpaRepository<ProcessedImage, String> {    
-    public List<ProcessedImage> findAllByOrderByProcessedAtDesc();
+public interface ProcessedImageRepository extends JpaRepository<ProcessedImage, String> {
+    String SUMMARY_SELECT = "SELECT p.id AS id, p.imageName AS imageName, p.operation AS operation, "
+            + "p.encryptionMode AS encryptionMode, p.processedAt AS processedAt, p.imageSize AS imageSize, "
+            + "p.storageKey AS storageKey FROM ProcessedImage p ";
+
+    @Query(SUMMARY_SELECT + "ORDER BY p.processedAt DESC, p.id DESC")
+    public List<ProcessedImageSummary> findLatest(Limit limit);
+
+    // Keyset pagination on (processed_at, id), served by idx_processed_images_processed_at
+    @Query(SUMMARY_SELECT + "WHERE p.processedAt < :processedAt OR (p.processedAt = :processedAt AND p.id < :id) "
+            + "ORDER BY p.processedAt DESC, p.id DESC")
+    public List<ProcessedImageSummary> findLatestBefore(@Param("processedAt") LocalDateTime processedAt,
+            @Param("id") String id, Limit limit);
+
+    @Query(SUMMARY_SELECT + "WHERE p.id = :id")
+    public Optional<ProcessedImageSummary> findSummaryById(@Param("id") String id);
 }
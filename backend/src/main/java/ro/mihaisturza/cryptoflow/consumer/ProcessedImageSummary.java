@@ -0,0 +1,25 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Metadata-only view of a {@link ProcessedImage}, so listings never touch the image bytes.
+ */
+public interface ProcessedImageSummary {
+    String getId();
+
+    String getImageName();
+
+    String getOperation();
+
+    String getEncryptionMode();
+
+    LocalDateTime getProcessedAt();
+
+    long getImageSize();
+
+    @JsonIgnore
+    String getStorageKey();
+}
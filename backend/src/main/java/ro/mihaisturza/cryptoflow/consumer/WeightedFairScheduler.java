@@ -0,0 +1,145 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import ro.mihaisturza.cryptoflow.amqp.SizeClass;
+
+/**
+ * Shares this node's processing slots between the small and large listeners by stride scheduling.
+ *
+ * While both classes have jobs waiting, slots are handed out in proportion to the class weights
+ * (by default four small jobs for every large one), so small jobs keep a short wait without starving
+ * large ones. A class with nothing waiting leaves its share to the other, and a class that was idle
+ * does not bank credit for the time it had no work.
+ */
+@Component
+@Profile("consumer")
+public class WeightedFairScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(WeightedFairScheduler.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<SizeClass, Condition> turns = new EnumMap<>(SizeClass.class);
+    private final Map<SizeClass, Double> strides = new EnumMap<>(SizeClass.class);
+    private final Map<SizeClass, Double> passes = new EnumMap<>(SizeClass.class);
+    private final Map<SizeClass, Integer> waiting = new EnumMap<>(SizeClass.class);
+
+    private int freeSlots;
+    private double globalPass;
+
+    public WeightedFairScheduler(@Value("${cryptoflow.consumer.scheduler.slots:0}") int slots,
+            @Value("${cryptoflow.consumer.scheduler.small-weight:4}") int smallWeight,
+            @Value("${cryptoflow.consumer.scheduler.large-weight:1}") int largeWeight) {
+        if (smallWeight <= 0 || largeWeight <= 0) {
+            throw new IllegalArgumentException("Scheduler weights must be positive");
+        }
+        this.freeSlots = slots > 0 ? slots : Runtime.getRuntime().availableProcessors();
+        strides.put(SizeClass.SMALL, 1.0 / smallWeight);
+        strides.put(SizeClass.LARGE, 1.0 / largeWeight);
+        for (SizeClass sizeClass : SizeClass.values()) {
+            turns.put(sizeClass, lock.newCondition());
+            passes.put(sizeClass, 0.0);
+            waiting.put(sizeClass, 0);
+        }
+
+        logger.info("Scheduling {} processing slots, small:large weight {}:{}", freeSlots, smallWeight,
+                largeWeight);
+    }
+
+    /**
+     * Blocks until this class is granted a slot.
+     */
+    public Slot acquire(SizeClass sizeClass) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting.get(sizeClass) == 0) {
+                // Coming back from idle: start at the current pass instead of catching up on missed turns
+                passes.put(sizeClass, Math.max(passes.get(sizeClass), globalPass));
+            }
+            waiting.merge(sizeClass, 1, Integer::sum);
+            try {
+                while (freeSlots == 0 || next() != sizeClass) {
+                    turns.get(sizeClass).await();
+                }
+            } catch (InterruptedException e) {
+                waiting.merge(sizeClass, -1, Integer::sum);
+                signalNext();
+                throw e;
+            }
+
+            waiting.merge(sizeClass, -1, Integer::sum);
+            freeSlots--;
+            globalPass = passes.get(sizeClass);
+            passes.merge(sizeClass, strides.get(sizeClass), Double::sum);
+            signalNext();
+            return new Slot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Jobs of the class waiting for a slot.
+     */
+    int getWaiting(SizeClass sizeClass) {
+        lock.lock();
+        try {
+            return waiting.get(sizeClass);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            freeSlots++;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The waiting class with the lowest pass; small wins ties.
+     */
+    private SizeClass next() {
+        SizeClass next = null;
+        for (SizeClass sizeClass : SizeClass.values()) {
+            if (waiting.get(sizeClass) > 0 && (next == null || passes.get(sizeClass) < passes.get(next))) {
+                next = sizeClass;
+            }
+        }
+        return next;
+    }
+
+    private void signalNext() {
+        SizeClass next = next();
+        if (freeSlots > 0 && next != null) {
+            turns.get(next).signal();
+        }
+    }
+
+    public class Slot implements AutoCloseable {
+        private boolean released;
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * The processed image as a stream, read from the source image one chunk at a time, so an image of any size
+ * is processed in O(chunk) memory. The header is copied through, then fixed-size, block-aligned pixel
+ * chunks go through a single cipher whose CBC chain carries over from one chunk to the next. The output is
+ * byte for byte what {@link JavaCryptoEngine#process} produces for the whole image.
+ *
+ * The source must hold exactly the declared number of bytes; it is read to its end, so a source that checks
+ * its content on EOF (e.g. against a hash) has done so before this stream reports its own end.
+ */
+class CipherStream extends InputStream {
+    static final long UNKNOWN_OFFSET = -1;
+
+    private static final int BLOCK = JavaCryptoEngine.AES_BLOCK_SIZE;
+
+    private final InputStream source;
+    private final long size;
+    private final KeySchedule schedule;
+    private final Operation operation;
+    private final EncryptionMode mode;
+    private final SecureRandom random;
+    private final int opmode;
+    private final String transformation;
+
+    private final byte[] input;
+    private final byte[] output;
+    private int outputPosition;
+    private int outputLimit;
+
+    private State state = State.HEADER;
+    private Cipher cipher;
+    private long dataOffset;
+    private long consumed;
+    private boolean closed;
+
+    /**
+     * The data offset comes from the header parsed on upload; with {@link #UNKNOWN_OFFSET} it is read from
+     * the source.
+     */
+    CipherStream(InputStream source, long size, long dataOffset, KeySchedule schedule, Operation operation,
+            EncryptionMode mode, int chunkSize, SecureRandom random) {
+        this.source = source;
+        this.size = size;
+        this.dataOffset = dataOffset;
+        this.schedule = schedule;
+        this.operation = operation;
+        this.mode = mode;
+        this.random = random;
+        this.opmode = operation == Operation.ENCRYPT ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+        this.transformation = mode == EncryptionMode.AES_CBC ? ParallelCipher.CBC : ParallelCipher.ECB;
+        this.input = new byte[Math.max(chunkSize, BmpHeader.MIN_SIZE)];
+        // Room for a padding block, or for a CBC IV after the last header chunk
+        this.output = new byte[input.length + BLOCK];
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (outputPosition == outputLimit) {
+            if (state == State.DONE) {
+                return -1;
+            }
+            fill();
+        }
+        int count = Math.min(len, outputLimit - outputPosition);
+        System.arraycopy(output, outputPosition, b, off, count);
+        outputPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return outputLimit - outputPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            source.close();
+        } finally {
+            if (cipher != null) {
+                // Closed early or after a failure, with the cipher mid-image
+                schedule.discard(opmode, cipher);
+                cipher = null;
+            }
+            schedule.close();
+        }
+    }
+
+    private void fill() throws IOException {
+        outputPosition = 0;
+        outputLimit = 0;
+        try {
+            switch (state) {
+                case HEADER -> readHeader();
+                case HEADER_REST -> copyHeader();
+                case PIXELS -> processChunk();
+                case END -> finish();
+                case DONE -> {
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to process image: " + e.getMessage(), e);
+        }
+    }
+
+    private void readHeader() throws IOException, GeneralSecurityException {
+        if (dataOffset == UNKNOWN_OFFSET) {
+            if (size < BmpHeader.MIN_SIZE) {
+                throw new IllegalArgumentException("File too small to be a valid BMP");
+            }
+            readFully(output, 0, BmpHeader.MIN_SIZE);
+            dataOffset = BmpHeader.readDataOffset(ByteBuffer.wrap(output, 0, BmpHeader.MIN_SIZE), size);
+            outputLimit = BmpHeader.MIN_SIZE;
+        } else if (dataOffset < BmpHeader.MIN_SIZE || dataOffset > size) {
+            throw new IllegalArgumentException("Invalid BMP pixel data offset: " + dataOffset);
+        }
+        state = State.HEADER_REST;
+        if (consumed == dataOffset) {
+            startCipher();
+        }
+    }
+
+    /**
+     * Passes the rest of the header (DIB header, extensions, palette) through, a chunk at a time.
+     */
+    private void copyHeader() throws IOException, GeneralSecurityException {
+        int length = (int) Math.min(input.length, dataOffset - consumed);
+        readFully(output, 0, length);
+        outputLimit = length;
+        if (consumed == dataOffset) {
+            startCipher();
+        }
+    }
+
+    /**
+     * Sets up the cipher once the header is out, with the IV generated and appended, or read from the source.
+     */
+    private void startCipher() throws IOException, GeneralSecurityException {
+        long cipherLength = size - dataOffset - (mode == EncryptionMode.AES_CBC ? BLOCK : 0);
+        if (operation == Operation.DECRYPT && (cipherLength < 0 || cipherLength % BLOCK != 0)) {
+            throw new IllegalArgumentException("Encrypted pixel data is not a multiple of the AES block size");
+        }
+
+        cipher = schedule.borrow(transformation, opmode);
+        if (mode == EncryptionMode.AES_CBC) {
+            byte[] iv = new byte[BLOCK];
+            if (operation == Operation.ENCRYPT) {
+                random.nextBytes(iv);
+                System.arraycopy(iv, 0, output, outputLimit, BLOCK);
+                outputLimit += BLOCK;
+            } else {
+                readFully(iv, 0, BLOCK);
+            }
+            cipher.init(opmode, schedule.getKey(), new IvParameterSpec(iv));
+        }
+        state = State.PIXELS;
+    }
+
+    private void processChunk() throws IOException, GeneralSecurityException {
+        long remaining = size - consumed;
+        if (remaining > input.length) {
+            // Whole blocks only, so the chain carries over; the tail goes through doFinal
+            int length = input.length - input.length % BLOCK;
+            readFully(input, 0, length);
+            outputLimit = cipher.update(input, 0, length, output, 0);
+            return;
+        }
+
+        int length = (int) remaining;
+        readFully(input, 0, length);
+        if (operation == Operation.ENCRYPT) {
+            int paddingLength = BLOCK - length % BLOCK;
+            outputLimit = cipher.update(input, 0, length - length % BLOCK, output, 0);
+            byte[] lastBlock = new byte[BLOCK];
+            System.arraycopy(input, length - length % BLOCK, lastBlock, 0, BLOCK - paddingLength);
+            for (int i = BLOCK - paddingLength; i < BLOCK; i++) {
+                lastBlock[i] = (byte) paddingLength;
+            }
+            outputLimit += cipher.doFinal(lastBlock, 0, BLOCK, output, outputLimit);
+        } else {
+            int plainLength = cipher.doFinal(input, 0, length, output, 0);
+            outputLimit = plainLength - JavaCryptoEngine.paddingLength(ByteBuffer.wrap(output, 0, plainLength), 0);
+        }
+        // The cipher is back in its initialised state, so the key schedule can hand it to the next job
+        schedule.release(transformation, opmode, cipher);
+        cipher = null;
+        state = State.END;
+    }
+
+    /**
+     * Reads past the end of the source, so a source that checks its content on EOF has done so.
+     */
+    private void finish() throws IOException {
+        if (source.read() != -1) {
+            throw new IOException("Image is longer than its declared " + size + " bytes");
+        }
+        state = State.DONE;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        int read = source.readNBytes(buffer, offset, length);
+        consumed += read;
+        if (read < length) {
+            throw new IOException("Image ended after " + consumed + " of " + size + " bytes");
+        }
+    }
+
+    private enum State {
+        HEADER, HEADER_REST, PIXELS, END, DONE
+    }
+}
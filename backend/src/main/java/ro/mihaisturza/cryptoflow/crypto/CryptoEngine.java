@@ -0,0 +1,78 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+public interface CryptoEngine {
+    /**
+     * The largest image every engine can process: it and its result, {@link #maxOutputSize(int)}, must fit a buffer.
+     * Engines that stream can process larger images, but uploads are capped here whatever engine the consumers run.
+     */
+    int MAX_IMAGE_SIZE = Integer.MAX_VALUE - 2 * 16;
+
+    /**
+     * Encrypts or decrypts the pixel region of a BMP image, leaving the header untouched.
+     * The image is read from the buffer's position to its limit; the buffer itself is not modified.
+     * Returns the complete processed image (header + processed pixels) between the result's position and limit.
+     * The result may be a heap buffer or a read-only memory-mapped region, so callers must not rely on array().
+     */
+    ByteBuffer process(ByteBuffer image, String key, Operation operation, EncryptionMode mode, String fileName);
+
+    /**
+     * Like {@link #process(ByteBuffer, String, Operation, EncryptionMode, String)}, but may write the result into
+     * the caller's output buffer, from its position on, which must not overlap the image and must have at least
+     * {@link #maxOutputSize(int)} bytes remaining. Engines that produce the result elsewhere (an output file,
+     * a mapped file, a worker pipe) ignore the output buffer and return their own.
+     */
+    default ByteBuffer process(ByteBuffer image, ByteBuffer output, String key, Operation operation,
+            EncryptionMode mode, String fileName) {
+        return process(image, key, operation, mode, fileName);
+    }
+
+    /**
+     * Like {@link #process(ByteBuffer, ByteBuffer, String, Operation, EncryptionMode, String)}, with the header the
+     * backend parsed on upload, so the engine need not read it again. With a null header the engine reads the
+     * pixel data offset from the image itself. Engines that hand the whole file to another process ignore it.
+     */
+    default ByteBuffer process(ByteBuffer image, ByteBuffer output, BmpHeader header, String key,
+            Operation operation, EncryptionMode mode, String fileName) {
+        return process(image, output, key, operation, mode, fileName);
+    }
+
+    /**
+     * True if the engine can process an image as a stream with {@link #processStream}.
+     */
+    default boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * Opens the processed image as a stream that reads the image on demand, so neither the image nor the result
+     * is ever held in memory as a whole. The image must hold exactly size bytes; it is read to its end and closed
+     * with the returned stream. The content is the same as {@link #process} would return.
+     */
+    default InputStream processStream(InputStream image, long size, String key, Operation operation,
+            EncryptionMode mode, String fileName) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot process images as streams");
+    }
+
+    /**
+     * Like {@link #processStream(InputStream, long, String, Operation, EncryptionMode, String)}, with the parsed
+     * header of the image, or null to read the pixel data offset from the stream.
+     */
+    default InputStream processStream(InputStream image, long size, BmpHeader header, String key,
+            Operation operation, EncryptionMode mode, String fileName) {
+        return processStream(image, size, key, operation, mode, fileName);
+    }
+
+    /**
+     * The largest result an image of this size can produce: encryption adds a CBC IV and up to a block of padding.
+     */
+    static int maxOutputSize(int imageSize) {
+        return Math.addExact(imageSize, 2 * 16);
+    }
+}
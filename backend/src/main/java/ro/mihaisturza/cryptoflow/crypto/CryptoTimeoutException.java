@@ -0,0 +1,10 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+/**
+ * A crypto processor that did not finish an image in time and was killed.
+ */
+public class CryptoTimeoutException extends RuntimeException {
+    public CryptoTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,258 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * In-process AES engine built on javax.crypto. HotSpot compiles the AES block
+ * operations down to AES-NI / ARMv8 crypto instructions, so the only work left
+ * here is slicing the BMP pixel region out of the buffer we already hold, heap or direct.
+ *
+ * Output layout matches the native processor: header copied as-is, pixels
+ * PKCS#7 padded, and for CBC the IV is prepended to the pixel region.
+ *
+ * Large pixel regions are split across all cores by {@link ParallelCipher}; images too large to hold are
+ * streamed through a {@link CipherStream} instead.
+ * Keys are prepared once and kept, with their ciphers, in a {@link KeyScheduleCache}.
+ */
+@Component("java")
+@Profile("consumer")
+public class JavaCryptoEngine implements CryptoEngine {
+    private static final Logger logger = LoggerFactory.getLogger(JavaCryptoEngine.class);
+
+    static final int AES_BLOCK_SIZE = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final ParallelCipher parallelCipher;
+    private final KeyScheduleCache keySchedules;
+    private final int chunkSize;
+
+    public JavaCryptoEngine(@Value("${cryptoflow.crypto.parallelism:0}") int parallelism,
+            @Value("${cryptoflow.crypto.chunk-size:1048576}") int chunkSize,
+            KeyFingerprint keyFingerprint,
+            @Value("${cryptoflow.crypto.key-cache.max-entries:256}") int keyCacheEntries,
+            @Value("${cryptoflow.crypto.key-cache.expire-after-access:10m}") Duration keyCacheExpiry) {
+        this.parallelCipher = new ParallelCipher(
+                parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(), chunkSize);
+        this.chunkSize = chunkSize;
+        // Enough idle ciphers per key for every pool thread plus a caller running a small or sequential job
+        this.keySchedules = new KeyScheduleCache(keyFingerprint, keyCacheEntries, keyCacheExpiry,
+                parallelCipher.getParallelism() + 1);
+        logger.info("Java crypto engine using {} threads with {} byte chunks, caching up to {} keys",
+                parallelCipher.getParallelism(), chunkSize, keyCacheEntries);
+    }
+
+    @Override
+    public ByteBuffer process(ByteBuffer image, String key, Operation operation, EncryptionMode mode, String fileName) {
+        return process(image, ByteBuffer.allocate(CryptoEngine.maxOutputSize(image.remaining())), key, operation,
+                mode, fileName);
+    }
+
+    @Override
+    public ByteBuffer process(ByteBuffer image, ByteBuffer output, String key, Operation operation,
+            EncryptionMode mode, String fileName) {
+        return process(image, output, null, key, operation, mode, fileName);
+    }
+
+    /**
+     * Lays the result out in the output buffer and encrypts or decrypts it there, so a pooled direct
+     * buffer receives the image without any heap copy of it. The pixel region starts at the parsed header's
+     * data offset, or at the one read from the image if there is no header.
+     */
+    @Override
+    public ByteBuffer process(ByteBuffer image, ByteBuffer output, BmpHeader header, String key,
+            Operation operation, EncryptionMode mode, String fileName) {
+        int dataOffset = dataOffset(image, header);
+
+        try (KeySchedule schedule = keySchedules.acquire(key)) {
+            ByteBuffer result = operation == Operation.ENCRYPT
+                    ? encrypt(image, dataOffset, schedule, mode, output)
+                    : decrypt(image, dataOffset, schedule, mode, output);
+
+            logger.info("Processed image {} in-process. Output size: {} bytes", fileName, result.remaining());
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to process image: " + e.getMessage(), e);
+        }
+    }
+
+    private ByteBuffer encrypt(ByteBuffer image, int dataOffset, KeySchedule schedule, EncryptionMode mode,
+            ByteBuffer output) throws GeneralSecurityException {
+        int pixelLength = image.remaining() - dataOffset;
+        int paddingLength = AES_BLOCK_SIZE - (pixelLength % AES_BLOCK_SIZE);
+        int ivLength = mode == EncryptionMode.AES_CBC ? AES_BLOCK_SIZE : 0;
+        int pixelStart = dataOffset + ivLength;
+
+        // Header, IV, pixels and padding are laid out in the output and then encrypted in place
+        ByteBuffer result = output.slice(output.position(), pixelStart + pixelLength + paddingLength);
+        result.put(image.slice(image.position(), dataOffset));
+        byte[] iv = null;
+        if (mode == EncryptionMode.AES_CBC) {
+            iv = new byte[AES_BLOCK_SIZE];
+            random.nextBytes(iv);
+            result.put(iv);
+        }
+        result.put(image.slice(image.position() + dataOffset, pixelLength));
+        for (int i = 0; i < paddingLength; i++) {
+            result.put((byte) paddingLength);
+        }
+
+        ByteBuffer pixels = result.slice(pixelStart, pixelLength + paddingLength);
+        if (mode == EncryptionMode.AES_CBC) {
+            parallelCipher.cbcEncrypt(schedule, iv, pixels, pixels);
+        } else {
+            parallelCipher.ecb(Cipher.ENCRYPT_MODE, schedule, pixels, pixels);
+        }
+        return result.flip();
+    }
+
+    private ByteBuffer decrypt(ByteBuffer image, int dataOffset, KeySchedule schedule, EncryptionMode mode,
+            ByteBuffer output) throws GeneralSecurityException {
+        int ivLength = mode == EncryptionMode.AES_CBC ? AES_BLOCK_SIZE : 0;
+        int cipherLength = image.remaining() - dataOffset - ivLength;
+        if (cipherLength < 0 || cipherLength % AES_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Encrypted pixel data is not a multiple of the AES block size");
+        }
+
+        ByteBuffer result = output.slice(output.position(), dataOffset + cipherLength);
+        result.put(image.slice(image.position(), dataOffset));
+
+        ByteBuffer cipherText = image.slice(image.position() + dataOffset + ivLength, cipherLength);
+        ByteBuffer pixels = result.slice(dataOffset, cipherLength);
+        if (mode == EncryptionMode.AES_CBC) {
+            byte[] iv = new byte[AES_BLOCK_SIZE];
+            image.get(image.position() + dataOffset, iv);
+            parallelCipher.cbcDecrypt(schedule, iv, cipherText, pixels);
+        } else {
+            parallelCipher.ecb(Cipher.DECRYPT_MODE, schedule, cipherText, pixels);
+        }
+
+        int paddingLength = paddingLength(result, dataOffset);
+        return result.clear().limit(dataOffset + cipherLength - paddingLength);
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    /**
+     * Runs the image through a {@link CipherStream} in chunk-size pieces on the calling thread. Streaming gives up
+     * the parallel split, which CBC encryption, the mode that cannot be tiled, does not have anyway.
+     */
+    @Override
+    public InputStream processStream(InputStream image, long size, String key, Operation operation,
+            EncryptionMode mode, String fileName) {
+        return processStream(image, size, null, key, operation, mode, fileName);
+    }
+
+    @Override
+    public InputStream processStream(InputStream image, long size, BmpHeader header, String key,
+            Operation operation, EncryptionMode mode, String fileName) {
+        logger.info("Streaming image {} ({} bytes) in-process", fileName, size);
+        return new CipherStream(image, size, header != null ? header.getDataOffset() : CipherStream.UNKNOWN_OFFSET,
+                keySchedules.acquire(key), operation, mode, chunkSize, random);
+    }
+
+    /**
+     * Encrypts or decrypts one tile of an ECB pixel region, in place where possible. Tiles other than the last
+     * are whole blocks and need no padding; the last tile is padded on encryption and unpadded on decryption,
+     * so the concatenated tiles match what {@link #process} produces for the whole image.
+     */
+    public ByteBuffer processEcbTile(byte[] tile, String key, Operation operation, boolean lastTile) {
+        try (KeySchedule schedule = keySchedules.acquire(key)) {
+            if (operation == Operation.ENCRYPT) {
+                byte[] data = tile;
+                if (lastTile) {
+                    int paddingLength = AES_BLOCK_SIZE - (tile.length % AES_BLOCK_SIZE);
+                    data = Arrays.copyOf(tile, tile.length + paddingLength);
+                    Arrays.fill(data, tile.length, data.length, (byte) paddingLength);
+                } else if (tile.length % AES_BLOCK_SIZE != 0) {
+                    throw new IllegalArgumentException("Tile is not a multiple of the AES block size");
+                }
+                ByteBuffer region = ByteBuffer.wrap(data);
+                parallelCipher.ecb(Cipher.ENCRYPT_MODE, schedule, region, region);
+                return ByteBuffer.wrap(data);
+            }
+
+            if (tile.length % AES_BLOCK_SIZE != 0) {
+                throw new IllegalArgumentException("Encrypted tile is not a multiple of the AES block size");
+            }
+            ByteBuffer region = ByteBuffer.wrap(tile);
+            parallelCipher.ecb(Cipher.DECRYPT_MODE, schedule, region, region);
+            int paddingLength = lastTile ? paddingLength(region, 0) : 0;
+            return ByteBuffer.wrap(tile, 0, tile.length - paddingLength);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to process tile: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drops the schedules of keys no job has used for expire-after-access, zeroing their key material.
+     */
+    @Scheduled(initialDelayString = "${cryptoflow.crypto.key-cache.sweep-interval:1m}",
+            fixedDelayString = "${cryptoflow.crypto.key-cache.sweep-interval:1m}")
+    public void expireKeys() {
+        int expired = keySchedules.expire();
+        if (expired > 0) {
+            logger.debug("Expired {} cached key schedules, {} left", expired, keySchedules.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        keySchedules.clear();
+        parallelCipher.close();
+    }
+
+    /**
+     * Mirrors the native removePadding: an invalid PKCS#7 trailer (e.g. wrong key)
+     * leaves the data untouched instead of failing the job.
+     */
+    static int paddingLength(ByteBuffer data, int pixelStart) {
+        int end = data.limit();
+        if (end == pixelStart) {
+            return 0;
+        }
+
+        int paddingValue = data.get(end - 1) & 0xFF;
+        if (paddingValue == 0 || paddingValue > AES_BLOCK_SIZE || paddingValue > end - pixelStart) {
+            return 0;
+        }
+
+        for (int i = end - paddingValue; i < end; i++) {
+            if ((data.get(i) & 0xFF) != paddingValue) {
+                return 0;
+            }
+        }
+        return paddingValue;
+    }
+
+    static int dataOffset(ByteBuffer image, BmpHeader header) {
+        long dataOffset = header != null ? header.getDataOffset()
+                : BmpHeader.readDataOffset(image, image.remaining());
+        if (dataOffset < BmpHeader.MIN_SIZE || dataOffset > image.remaining()) {
+            throw new IllegalArgumentException("Invalid BMP pixel data offset: " + dataOffset);
+        }
+        return (int) dataOffset;
+    }
+}
@@ -0,0 +1,207 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * An AES key prepared once and reused by every job with that key: the padded key bytes plus idle Cipher
+ * instances already keyed with them. ECB ciphers are handed out initialised; CBC ciphers still need an
+ * init with the job's IV, which skips key expansion because the cipher last saw the same key. At most
+ * max-idle ciphers per transformation and direction are kept; a job that fails mid-cipher discards its
+ * cipher instead of returning it, since its state is unknown.
+ *
+ * Jobs retain a schedule from the {@link KeyScheduleCache} and close it when done. Once the cache has evicted
+ * it, the last user destroys it: the key bytes are zeroed and idle ciphers are re-keyed with a zero key,
+ * so the expanded schedule of the real key does not outlive the entry.
+ */
+class KeySchedule implements AutoCloseable {
+    private static final int AES_KEY_SIZE = 32; // AES-256, same zero-padded key as the native processor
+    private static final SecretKeySpec ZERO_KEY = new SecretKeySpec(new byte[AES_KEY_SIZE], "AES");
+    private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[JavaCryptoEngine.AES_BLOCK_SIZE]);
+
+    private final RawKey key;
+    // ECB encrypt, ECB decrypt, CBC encrypt, CBC decrypt
+    private final Deque<Cipher>[] idleCiphers;
+    private final AtomicIntegerArray idleCounts; // ConcurrentLinkedDeque.size() walks the deque
+    private final int maxIdle;
+
+    private int users;
+    private boolean evicted;
+    private boolean destroyed;
+    private volatile long lastUsed = System.nanoTime();
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    KeySchedule(String key, int maxIdle) {
+        this.key = new RawKey(key);
+        this.maxIdle = maxIdle;
+        this.idleCounts = new AtomicIntegerArray(4);
+        this.idleCiphers = new Deque[4];
+        for (int i = 0; i < idleCiphers.length; i++) {
+            idleCiphers[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    SecretKey getKey() {
+        return key;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * An idle cipher for the transformation and direction, or a new one. ECB ciphers come initialised.
+     */
+    Cipher borrow(String transformation, int opmode) throws GeneralSecurityException {
+        int index = index(transformation, opmode);
+        Cipher cipher = idleCiphers[index].pollFirst();
+        if (cipher != null) {
+            idleCounts.decrementAndGet(index);
+        } else {
+            cipher = Cipher.getInstance(transformation);
+            if (transformation.equals(ParallelCipher.ECB)) {
+                cipher.init(opmode, key);
+            }
+        }
+        return cipher;
+    }
+
+    /**
+     * Returns a cipher after a successful doFinal, which left it in its initialised state. Beyond max-idle
+     * ciphers, it is discarded.
+     */
+    void release(String transformation, int opmode, Cipher cipher) {
+        if (isDestroyed()) {
+            scrub(cipher, opmode);
+            return;
+        }
+        int index = index(transformation, opmode);
+        if (idleCounts.incrementAndGet(index) > maxIdle) {
+            idleCounts.decrementAndGet(index);
+            scrub(cipher, opmode);
+            return;
+        }
+        idleCiphers[index].offerFirst(cipher);
+    }
+
+    /**
+     * Drops a borrowed cipher that cannot be reused, e.g. one that failed mid-operation, re-keying it with
+     * the zero key first.
+     */
+    void discard(int opmode, Cipher cipher) {
+        scrub(cipher, opmode);
+    }
+
+    int getIdleCount(String transformation, int opmode) {
+        return idleCounts.get(index(transformation, opmode));
+    }
+
+    synchronized boolean retain() {
+        if (destroyed) {
+            return false;
+        }
+        users++;
+        lastUsed = System.nanoTime();
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        users--;
+        if (evicted && users == 0) {
+            destroy();
+        }
+    }
+
+    /**
+     * Called once the cache has dropped the schedule; destroys it now or when its last user closes it.
+     */
+    synchronized void evict() {
+        evicted = true;
+        if (users == 0) {
+            destroy();
+        }
+    }
+
+    private synchronized boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private void destroy() {
+        destroyed = true;
+        key.destroy();
+        for (int i = 0; i < idleCiphers.length; i++) {
+            int opmode = i % 2 == 0 ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+            Cipher cipher;
+            while ((cipher = idleCiphers[i].pollFirst()) != null) {
+                scrub(cipher, opmode);
+            }
+        }
+    }
+
+    private static void scrub(Cipher cipher, int opmode) {
+        try {
+            if (cipher.getAlgorithm().equals(ParallelCipher.CBC)) {
+                cipher.init(opmode, ZERO_KEY, ZERO_IV);
+            } else {
+                cipher.init(opmode, ZERO_KEY);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to re-key an evicted cipher", e);
+        }
+    }
+
+    private static int index(String transformation, int opmode) {
+        return (transformation.equals(ParallelCipher.CBC) ? 2 : 0) + (opmode == Cipher.ENCRYPT_MODE ? 0 : 1);
+    }
+
+    /**
+     * Key bytes that can be zeroed, unlike SecretKeySpec's private copy. Providers read them via getEncoded().
+     */
+    private static class RawKey implements SecretKey {
+        private final byte[] bytes;
+        private volatile boolean destroyed;
+
+        RawKey(String key) {
+            this.bytes = Arrays.copyOf(key.getBytes(StandardCharsets.UTF_8), AES_KEY_SIZE);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "AES";
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            if (destroyed) {
+                throw new IllegalStateException("Key schedule was destroyed");
+            }
+            return bytes.clone();
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+            Arrays.fill(bytes, (byte) 0);
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+    }
+}
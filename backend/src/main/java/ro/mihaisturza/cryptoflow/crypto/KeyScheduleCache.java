@@ -0,0 +1,101 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+
+/**
+ * Bounded cache of {@link KeySchedule}s keyed by the salted key fingerprint, so the raw key is never a map key.
+ * Holds at most max-entries schedules; beyond that the least recently used one is evicted, and a sweep drops
+ * those idle for longer than expire-after-access. Evicted schedules are destroyed once their last job is done.
+ * With max-entries 0 every job gets a fresh schedule that is destroyed when the job closes it. Each schedule keeps
+ * up to max-idle ciphers per transformation and direction.
+ */
+class KeyScheduleCache {
+    private final KeyFingerprint keyFingerprint;
+    private final int maxEntries;
+    private final int maxIdleCiphers;
+    private final long expireAfterAccessNanos;
+    private final Map<String, KeySchedule> schedules = new ConcurrentHashMap<>();
+
+    KeyScheduleCache(KeyFingerprint keyFingerprint, int maxEntries, Duration expireAfterAccess, int maxIdleCiphers) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Key cache size must not be negative: " + maxEntries);
+        }
+        this.keyFingerprint = keyFingerprint;
+        this.maxEntries = maxEntries;
+        this.maxIdleCiphers = maxIdleCiphers;
+        this.expireAfterAccessNanos = expireAfterAccess.toNanos();
+    }
+
+    /**
+     * The schedule for the key, retained for the caller, who must close it when done.
+     */
+    KeySchedule acquire(String key) {
+        if (maxEntries == 0) {
+            KeySchedule schedule = new KeySchedule(key, maxIdleCiphers);
+            schedule.retain();
+            schedule.evict();
+            return schedule;
+        }
+
+        String fingerprint = keyFingerprint.of(key);
+        while (true) {
+            KeySchedule schedule = schedules.computeIfAbsent(fingerprint, ignored -> new KeySchedule(key, maxIdleCiphers));
+            if (schedule.retain()) {
+                if (schedules.size() > maxEntries) {
+                    evictLeastRecentlyUsed();
+                }
+                return schedule;
+            }
+            // Destroyed between the lookup and the retain; it is already out of the map or about to be
+            schedules.remove(fingerprint, schedule);
+        }
+    }
+
+    int size() {
+        return schedules.size();
+    }
+
+    /**
+     * Evicts the schedules that have not been used for longer than expire-after-access.
+     */
+    int expire() {
+        long now = System.nanoTime();
+        int expired = 0;
+        for (Map.Entry<String, KeySchedule> entry : schedules.entrySet()) {
+            if (now - entry.getValue().getLastUsed() > expireAfterAccessNanos
+                    && evict(entry.getKey(), entry.getValue())) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    void clear() {
+        schedules.forEach(this::evict);
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (schedules.size() > maxEntries) {
+            Map.Entry<String, KeySchedule> oldest = schedules.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().getLastUsed()))
+                    .orElse(null);
+            if (oldest == null) {
+                return;
+            }
+            evict(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private boolean evict(String fingerprint, KeySchedule schedule) {
+        if (schedules.remove(fingerprint, schedule)) {
+            schedule.evict();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,213 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Timer;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+
+@Component("native")
+@Profile("consumer")
+public class NativeCryptoEngine implements CryptoEngine {
+    private static final Logger logger = LoggerFactory.getLogger(NativeCryptoEngine.class);
+
+    private static final String TEMP_DATA_PATH = "/tmp/crypto"; // Temporary directory for processing
+    private static final int PROCESS_TIMEOUT_SECONDS = 60; // Timeout for crypto process execution
+
+    /**
+     * How images are handed to the processor: FILE writes an input file and reads back a separate output file,
+     * SHM has the processor work in place on a memory-mapped file under the shm path.
+     */
+    public enum Exchange {
+        FILE, SHM
+    }
+
+    private final String processorPath;
+    private final Exchange exchange;
+    private final Path shmPath;
+    private final PipelineMetrics pipelineMetrics;
+
+    public NativeCryptoEngine(
+            @Value("${cryptoflow.crypto.native.processor-path:/app/crypto_processor}") String processorPath,
+            @Value("${cryptoflow.crypto.native.exchange:file}") Exchange exchange,
+            @Value("${cryptoflow.crypto.native.shm-path:/dev/shm/cryptoflow}") String shmPath,
+            PipelineMetrics pipelineMetrics) {
+        this.processorPath = processorPath;
+        this.exchange = exchange;
+        this.shmPath = Paths.get(shmPath);
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public ByteBuffer process(ByteBuffer image, String key, Operation operation, EncryptionMode mode, String fileName) {
+        try {
+            return exchange == Exchange.SHM
+                    ? processInSharedMemory(image, key, operation, mode)
+                    : processWithFiles(image, key, operation, mode, fileName);
+        } catch (Exception e) {
+            logger.error("Error processing image with native crypto processor", e);
+            throw new RuntimeException("Failed to process image: " + e.getMessage(), e);
+        }
+    }
+
+    private ByteBuffer processWithFiles(ByteBuffer image, String key, Operation operation, EncryptionMode mode,
+            String fileName) throws IOException, InterruptedException {
+        // Create temp directory if it doesn't exist
+        Files.createDirectories(Paths.get(TEMP_DATA_PATH));
+
+        // Generate unique file names
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        String inputFileName = timestamp + "_input_" + fileName;
+        String outputFileName = timestamp + "_output_" + fileName;
+
+        Path inputFile = Paths.get(TEMP_DATA_PATH, inputFileName);
+        Path outputFile = Paths.get(TEMP_DATA_PATH, outputFileName);
+
+        long size = image.remaining();
+
+        // Write input data to file
+        Timer.Sample writeSample = pipelineMetrics.start();
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = image.duplicate();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+        pipelineMetrics.stop(writeSample, PipelineMetrics.TEMP_FILE_WRITE, operation, mode, size);
+        logger.info("Written input file: {}", inputFile);
+
+        // Prepare command arguments
+        String operationStr = operation.name().toLowerCase();
+        String modeStr = extractModeFromEnum(mode);
+
+        String[] command = {
+            processorPath,
+            operationStr,
+            modeStr,
+            key,
+            inputFile.toString(),
+            outputFile.toString()
+        };
+
+        Timer.Sample processSample = pipelineMetrics.start();
+        runProcessor(command);
+        pipelineMetrics.stop(processSample, PipelineMetrics.NATIVE_PROCESS, operation, mode, size);
+
+        // Read result
+        if (!Files.exists(outputFile)) {
+            throw new RuntimeException("Output file was not created: " + outputFile);
+        }
+
+        Timer.Sample readSample = pipelineMetrics.start();
+        byte[] result = Files.readAllBytes(outputFile);
+        pipelineMetrics.stop(readSample, PipelineMetrics.OUTPUT_READ, operation, mode, size);
+        logger.info("Successfully processed image. Output size: {} bytes", result.length);
+
+        // Cleanup
+        Files.deleteIfExists(inputFile);
+        Files.deleteIfExists(outputFile);
+
+        return ByteBuffer.wrap(result);
+    }
+
+    /**
+     * Copies the image once into a mapped file under the shm path, lets the processor encrypt it in place
+     * and maps the result back. The file is unlinked right away; its pages are released with the mapping.
+     */
+    private ByteBuffer processInSharedMemory(ByteBuffer image, String key, Operation operation, EncryptionMode mode)
+            throws IOException, InterruptedException {
+        Files.createDirectories(shmPath);
+        Path file = Files.createTempFile(shmPath, "job-", ".bmp");
+        long size = image.remaining();
+
+        try {
+            Timer.Sample writeSample = pipelineMetrics.start();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size).put(image.duplicate());
+            }
+            pipelineMetrics.stop(writeSample, PipelineMetrics.TEMP_FILE_WRITE, operation, mode, size);
+
+            String[] command = {
+                processorPath,
+                "--in-place",
+                operation.name().toLowerCase(),
+                extractModeFromEnum(mode),
+                key,
+                file.toString()
+            };
+
+            Timer.Sample processSample = pipelineMetrics.start();
+            runProcessor(command);
+            pipelineMetrics.stop(processSample, PipelineMetrics.NATIVE_PROCESS, operation, mode, size);
+
+            Timer.Sample readSample = pipelineMetrics.start();
+            MappedByteBuffer result;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            pipelineMetrics.stop(readSample, PipelineMetrics.OUTPUT_READ, operation, mode, size);
+            logger.info("Successfully processed image in shared memory. Output size: {} bytes", result.remaining());
+            return result;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void runProcessor(String[] command) throws IOException, InterruptedException {
+        logger.info("Executing crypto command: {}", String.join(" ", command));
+
+        // Execute crypto processor directly
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+
+        // Read output
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append("\n");
+                logger.info("Crypto output: {}", line);
+            }
+        }
+
+        // Wait for completion
+        boolean finished = process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!finished) {
+            process.destroyForcibly();
+            throw new CryptoTimeoutException("Crypto process timed out after " + PROCESS_TIMEOUT_SECONDS + " s");
+        }
+
+        int exitCode = process.exitValue();
+        if (exitCode != 0) {
+            throw new RuntimeException("Crypto process failed with exit code " + exitCode + ": " + output.toString());
+        }
+    }
+
+    private String extractModeFromEnum(EncryptionMode mode) {
+        // Convert AES_ECB -> ECB, AES_CBC -> CBC
+        String modeStr = mode.name();
+        if (modeStr.startsWith("AES_")) {
+            return modeStr.substring(4); // Remove "AES_" prefix
+        }
+        return modeStr;
+    }
+}
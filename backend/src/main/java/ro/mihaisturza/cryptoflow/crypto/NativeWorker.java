@@ -0,0 +1,144 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * One long-lived {@code crypto_processor --worker} process, driven over its stdin/stdout.
+ * The frame layout is documented in crypto/src/worker.h. Not thread-safe: a worker runs one job at a time,
+ * except for {@link #kill()}, which a watchdog may call from another thread.
+ */
+class NativeWorker {
+    private static final int REQUEST_JOB = 1;
+    private static final int REQUEST_PING = 2;
+
+    private static final int STATUS_OK = 0;
+    private static final int STATUS_INVALID = 1;
+
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private final ProcessBuilder processBuilder;
+    private final int id;
+
+    private volatile Process process;
+    private volatile boolean killed;
+    private DataOutputStream requests;
+    private DataInputStream responses;
+    private boolean started;
+
+    NativeWorker(ProcessBuilder processBuilder, int id) {
+        this.processBuilder = processBuilder;
+        this.id = id;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    boolean isRunning() {
+        Process current = process;
+        return current != null && current.isAlive();
+    }
+
+    /**
+     * True once the worker has been started, so a dead process is a crash rather than a worker not needed yet.
+     */
+    boolean wasStarted() {
+        return started;
+    }
+
+    boolean wasKilled() {
+        return killed;
+    }
+
+    void start() throws IOException {
+        stop();
+        killed = false;
+        process = processBuilder.start();
+        requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream(), PIPE_BUFFER_SIZE));
+        responses = new DataInputStream(new BufferedInputStream(process.getInputStream(), PIPE_BUFFER_SIZE));
+        started = true;
+    }
+
+    ByteBuffer process(ByteBuffer image, String key, Operation operation, EncryptionMode mode) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        requests.writeByte(REQUEST_JOB);
+        requests.writeByte(operation == Operation.ENCRYPT ? 0 : 1);
+        requests.writeByte(mode == EncryptionMode.AES_ECB ? 0 : 1);
+        requests.writeShort(keyBytes.length);
+        requests.write(keyBytes);
+        requests.writeLong(image.remaining());
+        writeImage(image);
+        requests.flush();
+
+        int status = responses.readUnsignedByte();
+        if (status != STATUS_OK) {
+            byte[] message = new byte[responses.readUnsignedShort()];
+            responses.readFully(message);
+            String error = new String(message, StandardCharsets.UTF_8);
+            if (status == STATUS_INVALID) {
+                throw new IllegalArgumentException("Invalid image: " + error);
+            }
+            throw new RuntimeException("Crypto worker " + id + " failed: " + error);
+        }
+
+        long length = responses.readLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Crypto worker " + id + " returned " + length + " bytes");
+        }
+        byte[] result = new byte[(int) length];
+        responses.readFully(result);
+        return ByteBuffer.wrap(result);
+    }
+
+    void ping() throws IOException {
+        requests.writeByte(REQUEST_PING);
+        requests.flush();
+        int status = responses.readUnsignedByte();
+        long length = responses.readLong();
+        if (status != STATUS_OK || length != 0) {
+            throw new IOException("Unexpected ping response from crypto worker " + id);
+        }
+    }
+
+    /**
+     * Kills the process so a blocked job fails with an IOException. Safe to call from any thread.
+     */
+    void kill() {
+        Process current = process;
+        if (current != null) {
+            killed = true;
+            current.destroyForcibly();
+        }
+    }
+
+    void stop() {
+        Process current = process;
+        if (current != null) {
+            current.destroyForcibly();
+            process = null;
+        }
+    }
+
+    private void writeImage(ByteBuffer image) throws IOException {
+        if (image.hasArray()) {
+            requests.write(image.array(), image.arrayOffset() + image.position(), image.remaining());
+            return;
+        }
+        ByteBuffer content = image.duplicate();
+        byte[] chunk = new byte[PIPE_BUFFER_SIZE];
+        while (content.hasRemaining()) {
+            int length = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, length);
+            requests.write(chunk, 0, length);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+
+/**
+ * Runs the native processor as a pool of long-lived {@code --worker} processes, so a job pays neither exec
+ * nor OpenSSL/MPI/OpenMP startup. Workers are started on first use, restarted after a crash or timeout,
+ * and pinged while idle. Each job gets a timeout that grows with the image size. Workers keep the cipher
+ * contexts of recently used keys, sized by the same key-cache settings as the Java engine.
+ */
+@Component("native-pool")
+@Profile("consumer")
+public class NativeWorkerPoolEngine implements CryptoEngine {
+    private static final Logger logger = LoggerFactory.getLogger(NativeWorkerPoolEngine.class);
+
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final BlockingQueue<NativeWorker> idleWorkers;
+    private final ScheduledExecutorService scheduler;
+    private final Duration timeout;
+    private final Duration timeoutPerMb;
+    private final PipelineMetrics pipelineMetrics;
+
+    public NativeWorkerPoolEngine(
+            @Value("${cryptoflow.crypto.native.processor-path:/app/crypto_processor}") String processorPath,
+            @Value("${cryptoflow.crypto.native.pool.size:0}") int size,
+            @Value("${cryptoflow.crypto.native.pool.timeout:10s}") Duration timeout,
+            @Value("${cryptoflow.crypto.native.pool.timeout-per-mb:1s}") Duration timeoutPerMb,
+            @Value("${cryptoflow.crypto.native.pool.health-check-interval:30s}") Duration healthCheckInterval,
+            @Value("${cryptoflow.crypto.key-cache.max-entries:256}") int keyCacheEntries,
+            @Value("${cryptoflow.crypto.key-cache.expire-after-access:10m}") Duration keyCacheExpiry,
+            PipelineMetrics pipelineMetrics) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = size > 0 ? size : cores;
+        this.timeout = timeout;
+        this.timeoutPerMb = timeoutPerMb;
+        this.pipelineMetrics = pipelineMetrics;
+
+        // Split the cores between workers instead of letting every worker's OpenMP team claim all of them
+        ProcessBuilder processBuilder = new ProcessBuilder(processorPath, "--worker")
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        processBuilder.environment().put("OMP_NUM_THREADS", String.valueOf(Math.max(1, cores / poolSize)));
+        // Idle keys are dropped when the worker is pinged, so expiry is as coarse as the health check interval
+        processBuilder.environment().put("CRYPTO_KEY_CACHE_ENTRIES", String.valueOf(keyCacheEntries));
+        processBuilder.environment().put("CRYPTO_KEY_CACHE_TTL_SECONDS", String.valueOf(keyCacheExpiry.toSeconds()));
+
+        idleWorkers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            idleWorkers.add(new NativeWorker(processBuilder, i));
+        }
+
+        // Two threads, so a ping's watchdog can fire while the health check is blocked on that ping
+        scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "native-pool-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval.toMillis(),
+                healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Native worker pool with {} workers", poolSize);
+    }
+
+    @Override
+    public ByteBuffer process(ByteBuffer image, String key, Operation operation, EncryptionMode mode, String fileName) {
+        NativeWorker worker;
+        try {
+            worker = idleWorkers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a crypto worker", e);
+        }
+
+        long size = image.remaining();
+        Duration jobTimeout = timeoutFor(size);
+        try {
+            if (!worker.isRunning()) {
+                worker.start();
+            }
+
+            Timer.Sample processSample = pipelineMetrics.start();
+            ScheduledFuture<?> watchdog = scheduler.schedule(worker::kill, jobTimeout.toMillis(),
+                    TimeUnit.MILLISECONDS);
+            ByteBuffer result;
+            try {
+                result = worker.process(image, key, operation, mode);
+            } finally {
+                watchdog.cancel(false);
+            }
+            pipelineMetrics.stop(processSample, PipelineMetrics.NATIVE_PROCESS, operation, mode, size);
+
+            logger.info("Processed image {} on crypto worker {}. Output size: {} bytes", fileName, worker.getId(),
+                    result.remaining());
+            return result;
+        } catch (IOException e) {
+            boolean timedOut = worker.wasKilled();
+            worker.stop();
+            if (timedOut) {
+                throw new CryptoTimeoutException("Crypto worker " + worker.getId() + " timed out after " + jobTimeout);
+            }
+            throw new RuntimeException("Crypto worker " + worker.getId() + " crashed: " + e.getMessage(), e);
+        } finally {
+            idleWorkers.add(worker);
+        }
+    }
+
+    private Duration timeoutFor(long size) {
+        return timeout.plus(timeoutPerMb.multipliedBy((size + BYTES_PER_MB - 1) / BYTES_PER_MB));
+    }
+
+    /**
+     * Pings the workers that are idle right now and restarts any that died, so the next job
+     * doesn't pay for the restart.
+     */
+    private void checkHealth() {
+        for (int i = idleWorkers.size(); i > 0; i--) {
+            NativeWorker worker = idleWorkers.poll();
+            if (worker == null) {
+                return;
+            }
+            try {
+                if (worker.isRunning()) {
+                    ScheduledFuture<?> watchdog = scheduler.schedule(worker::kill, timeout.toMillis(),
+                            TimeUnit.MILLISECONDS);
+                    try {
+                        worker.ping();
+                    } finally {
+                        watchdog.cancel(false);
+                    }
+                } else if (worker.wasStarted()) {
+                    logger.warn("Crypto worker {} is not running, restarting it", worker.getId());
+                    worker.start();
+                }
+            } catch (IOException e) {
+                logger.warn("Crypto worker {} failed its health check, restarting it", worker.getId(), e);
+                worker.stop();
+                try {
+                    worker.start();
+                } catch (IOException restartFailure) {
+                    logger.error("Failed to restart crypto worker {}", worker.getId(), restartFailure);
+                }
+            } finally {
+                idleWorkers.add(worker);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        idleWorkers.forEach(NativeWorker::stop);
+    }
+}
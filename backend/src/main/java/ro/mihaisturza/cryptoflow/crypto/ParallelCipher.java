@@ -0,0 +1,183 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Splits a buffer into 16-byte aligned chunks and runs them through AES on a
+ * dedicated ForkJoinPool, the same alignment the native processor uses for its
+ * MPI ranks. Cipher instances come from the job's {@link KeySchedule}, already
+ * keyed, so neither a 100 MB image nor a stream of small ones with the same key
+ * expands the key or allocates a Cipher per chunk. Each thread has two staging
+ * arrays: direct buffers and in-place regions are moved through them, where
+ * javax.crypto would copy them through fresh arrays.
+ *
+ * ECB chunks are independent in both directions. CBC decryption is parallel as
+ * well, since every block only needs the previous ciphertext block as its IV;
+ * CBC encryption is inherently sequential and runs on the caller thread.
+ */
+class ParallelCipher implements AutoCloseable {
+    static final String ECB = "AES/ECB/NoPadding";
+    static final String CBC = "AES/CBC/NoPadding";
+
+    private static final int STAGING_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[][]> staging =
+            ThreadLocal.withInitial(() -> new byte[][] { new byte[STAGING_SIZE], new byte[STAGING_SIZE] });
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    ParallelCipher(int parallelism, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize % JavaCryptoEngine.AES_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of "
+                    + JavaCryptoEngine.AES_BLOCK_SIZE + ": " + chunkSize);
+        }
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+    }
+
+    int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Processes input from its position to its limit into output from its position on. Neither buffer's
+     * position moves; heap and direct buffers work alike, and output may be the same region as input.
+     */
+    void ecb(int opmode, KeySchedule schedule, ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+        run(input.remaining(), (chunkOffset, chunkLength) -> withCipher(schedule, ECB, opmode,
+                cipher -> doFinal(cipher, input, chunkOffset, output, chunkOffset, chunkLength)));
+    }
+
+    void cbcEncrypt(KeySchedule schedule, byte[] iv, ByteBuffer input, ByteBuffer output)
+            throws GeneralSecurityException {
+        withCipher(schedule, CBC, Cipher.ENCRYPT_MODE, cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, schedule.getKey(), new IvParameterSpec(iv));
+            doFinal(cipher, input, 0, output, 0, input.remaining());
+        });
+    }
+
+    /**
+     * Output must not overlap the input: each chunk reads the last ciphertext
+     * block of its predecessor as IV.
+     */
+    void cbcDecrypt(KeySchedule schedule, byte[] iv, ByteBuffer input, ByteBuffer output)
+            throws GeneralSecurityException {
+        run(input.remaining(), (chunkOffset, chunkLength) -> {
+            byte[] chunkIv = iv;
+            if (chunkOffset > 0) {
+                chunkIv = new byte[JavaCryptoEngine.AES_BLOCK_SIZE];
+                input.get(input.position() + chunkOffset - JavaCryptoEngine.AES_BLOCK_SIZE, chunkIv);
+            }
+
+            IvParameterSpec ivSpec = new IvParameterSpec(chunkIv);
+            withCipher(schedule, CBC, Cipher.DECRYPT_MODE, cipher -> {
+                cipher.init(Cipher.DECRYPT_MODE, schedule.getKey(), ivSpec);
+                doFinal(cipher, input, chunkOffset, output, chunkOffset, chunkLength);
+            });
+        });
+    }
+
+    /**
+     * Runs the task with a cipher borrowed from the schedule. The cipher goes back for reuse only if the task
+     * completed; otherwise it may be mid-operation and is discarded.
+     */
+    private static void withCipher(KeySchedule schedule, String transformation, int opmode, CipherTask task)
+            throws GeneralSecurityException {
+        Cipher cipher = schedule.borrow(transformation, opmode);
+        boolean completed = false;
+        try {
+            task.process(cipher);
+            completed = true;
+        } finally {
+            if (completed) {
+                schedule.release(transformation, opmode, cipher);
+            } else {
+                schedule.discard(opmode, cipher);
+            }
+        }
+    }
+
+    private void run(int length, ChunkTask task) throws GeneralSecurityException {
+        if (length <= chunkSize) {
+            task.process(0, length);
+            return;
+        }
+
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += chunkSize) {
+            int chunkOffset = offset;
+            int chunkLength = Math.min(chunkSize, length - offset);
+            chunks.add(() -> {
+                task.process(chunkOffset, chunkLength);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing image chunks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GeneralSecurityException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to process image chunk", e.getCause());
+        }
+    }
+
+    /**
+     * Runs length bytes of input, starting inputOffset past its position, through the initialised cipher
+     * into output, starting outputOffset past its position. Length must be a multiple of the block size.
+     */
+    private static void doFinal(Cipher cipher, ByteBuffer input, int inputOffset, ByteBuffer output,
+            int outputOffset, int length) throws GeneralSecurityException {
+        int inputStart = input.position() + inputOffset;
+        int outputStart = output.position() + outputOffset;
+        if (input.hasArray() && output.hasArray() && input.array() != output.array()) {
+            cipher.doFinal(input.array(), input.arrayOffset() + inputStart, length, output.array(),
+                    output.arrayOffset() + outputStart);
+            return;
+        }
+
+        byte[][] arrays = staging.get();
+        byte[] stagedInput = arrays[0];
+        byte[] stagedOutput = arrays[1];
+        for (int offset = 0; offset < length; offset += STAGING_SIZE) {
+            int stagedLength = Math.min(STAGING_SIZE, length - offset);
+            input.get(inputStart + offset, stagedInput, 0, stagedLength);
+            cipher.update(stagedInput, 0, stagedLength, stagedOutput, 0);
+            output.put(outputStart + offset, stagedOutput, 0, stagedLength);
+        }
+        cipher.doFinal(stagedOutput, 0);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void process(int chunkOffset, int chunkLength) throws GeneralSecurityException;
+    }
+
+    @FunctionalInterface
+    private interface CipherTask {
+        void process(Cipher cipher) throws GeneralSecurityException;
+    }
+}
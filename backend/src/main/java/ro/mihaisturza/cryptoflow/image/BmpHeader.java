@@ -0,0 +1,168 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * File and DIB header of a BMP, parsed from at most the first 138 bytes.
+ *
+ * Accepts the OS/2 BITMAPCOREHEADER (12 bytes) and the BITMAPINFOHEADER family (40, 52, 56, 108 and
+ * 124 bytes) and rejects files whose pixel region can't hold the rows the header declares. Encrypted
+ * images keep their original header and only grow, so the same check holds for them.
+ */
+@AllArgsConstructor
+@Getter
+public class BmpHeader {
+    public static final int FILE_HEADER_SIZE = 14;
+    public static final int MIN_SIZE = FILE_HEADER_SIZE + 12;
+    public static final int MAX_SIZE = FILE_HEADER_SIZE + 124;
+
+    private static final int CORE_HEADER_SIZE = 12;
+    private static final int BI_RGB = 0;
+    private static final int BI_RLE8 = 1;
+    private static final int BI_RLE4 = 2;
+    private static final int BI_BITFIELDS = 3;
+    private static final int BI_ALPHABITFIELDS = 6;
+
+    private final long dataOffset;
+    private final int dibHeaderSize;
+    private final int width;
+    private final int height; // negative for top-down images
+    private final int bitsPerPixel;
+    private final int compression;
+
+    /**
+     * Reads and parses only the header bytes of a stream positioned at the start of the file.
+     */
+    public static BmpHeader read(InputStream content, long fileSize) throws IOException {
+        return parse(ByteBuffer.wrap(content.readNBytes(MAX_SIZE)), fileSize);
+    }
+
+    public static BmpHeader parse(ByteBuffer data, long fileSize) {
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = header.position();
+        int available = header.remaining();
+        if (available < MIN_SIZE) {
+            throw new IllegalArgumentException("File is too small to be a valid BMP (" + available + " bytes)");
+        }
+        if (header.get(start) != 'B' || header.get(start + 1) != 'M') {
+            throw new IllegalArgumentException(String.format("Invalid BMP signature. Expected 'BM', got '%c%c'",
+                    (char) header.get(start), (char) header.get(start + 1)));
+        }
+
+        long dataOffset = Integer.toUnsignedLong(header.getInt(start + 10));
+        int dibHeaderSize = header.getInt(start + FILE_HEADER_SIZE);
+        if (!isKnownDibHeaderSize(dibHeaderSize)) {
+            throw new IllegalArgumentException("Unsupported BMP DIB header size: " + dibHeaderSize);
+        }
+        if (available < FILE_HEADER_SIZE + dibHeaderSize) {
+            throw new IllegalArgumentException("BMP header is truncated");
+        }
+
+        int dib = start + FILE_HEADER_SIZE;
+        int width;
+        int height;
+        int planes;
+        int bitsPerPixel;
+        int compression = BI_RGB;
+        if (dibHeaderSize == CORE_HEADER_SIZE) {
+            width = Short.toUnsignedInt(header.getShort(dib + 4));
+            height = Short.toUnsignedInt(header.getShort(dib + 6));
+            planes = Short.toUnsignedInt(header.getShort(dib + 8));
+            bitsPerPixel = Short.toUnsignedInt(header.getShort(dib + 10));
+        } else {
+            width = header.getInt(dib + 4);
+            height = header.getInt(dib + 8);
+            planes = Short.toUnsignedInt(header.getShort(dib + 12));
+            bitsPerPixel = Short.toUnsignedInt(header.getShort(dib + 14));
+            compression = header.getInt(dib + 16);
+        }
+
+        if (planes != 1) {
+            throw new IllegalArgumentException("Invalid BMP plane count: " + planes);
+        }
+        if (width <= 0 || height == 0 || height == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid BMP dimensions: " + width + "x" + height);
+        }
+        if (!isKnownBitsPerPixel(bitsPerPixel)) {
+            throw new IllegalArgumentException("Unsupported BMP bit depth: " + bitsPerPixel);
+        }
+        if (dataOffset < FILE_HEADER_SIZE + dibHeaderSize || dataOffset > fileSize) {
+            throw new IllegalArgumentException("Invalid BMP pixel data offset: " + dataOffset);
+        }
+
+        BmpHeader parsed = new BmpHeader(dataOffset, dibHeaderSize, width, height, bitsPerPixel, compression);
+        switch (compression) {
+            case BI_RGB, BI_BITFIELDS, BI_ALPHABITFIELDS -> {
+                if (parsed.getPixelLength(fileSize) < parsed.getExpectedPixelLength()) {
+                    throw new IllegalArgumentException(String.format(
+                            "BMP pixel data is truncated: %dx%d at %d bpp needs %d bytes, file has %d",
+                            width, Math.abs((long) height), bitsPerPixel, parsed.getExpectedPixelLength(),
+                            parsed.getPixelLength(fileSize)));
+                }
+            }
+            case BI_RLE8, BI_RLE4 -> {
+                // Run-length encoded rows have no fixed size
+            }
+            default -> throw new IllegalArgumentException("Unsupported BMP compression: " + compression);
+        }
+        return parsed;
+    }
+
+    /**
+     * Reads only the pixel data offset, for images that come without a parsed header. The offset must lie past
+     * the file and DIB headers and within the file; needs the first {@link #MIN_SIZE} bytes of the image.
+     */
+    public static long readDataOffset(ByteBuffer data, long fileSize) {
+        ByteBuffer header = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = header.position();
+        if (header.remaining() < MIN_SIZE || fileSize < MIN_SIZE) {
+            throw new IllegalArgumentException("File is too small to be a valid BMP");
+        }
+        if (header.get(start) != 'B' || header.get(start + 1) != 'M') {
+            throw new IllegalArgumentException("Invalid BMP signature");
+        }
+
+        long dataOffset = Integer.toUnsignedLong(header.getInt(start + 10));
+        int dibHeaderSize = header.getInt(start + FILE_HEADER_SIZE);
+        if (!isKnownDibHeaderSize(dibHeaderSize)) {
+            throw new IllegalArgumentException("Unsupported BMP DIB header size: " + dibHeaderSize);
+        }
+        if (dataOffset < FILE_HEADER_SIZE + dibHeaderSize || dataOffset > fileSize) {
+            throw new IllegalArgumentException("Invalid BMP pixel data offset: " + dataOffset);
+        }
+        return dataOffset;
+    }
+
+    /**
+     * Bytes per row, padded to a multiple of four.
+     */
+    public long getRowStride() {
+        return ((long) width * bitsPerPixel + 31) / 32 * 4;
+    }
+
+    /**
+     * Size of the uncompressed pixel rows the header declares.
+     */
+    public long getExpectedPixelLength() {
+        return getRowStride() * Math.abs((long) height);
+    }
+
+    public long getPixelLength(long fileSize) {
+        return fileSize - dataOffset;
+    }
+
+    private static boolean isKnownDibHeaderSize(int size) {
+        return size == 12 || size == 40 || size == 52 || size == 56 || size == 108 || size == 124;
+    }
+
+    private static boolean isKnownBitsPerPixel(int bitsPerPixel) {
+        return bitsPerPixel == 1 || bitsPerPixel == 4 || bitsPerPixel == 8 || bitsPerPixel == 16
+                || bitsPerPixel == 24 || bitsPerPixel == 32;
+    }
+}
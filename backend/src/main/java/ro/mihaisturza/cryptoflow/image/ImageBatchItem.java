@@ -0,0 +1,29 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of one file of a batch: the job id if it was queued, the reason otherwise.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ImageBatchItem {
+    private String fileName;
+    private UUID id;
+    private String error;
+
+    public static ImageBatchItem accepted(String fileName, UUID id) {
+        return new ImageBatchItem(fileName, id, null);
+    }
+
+    public static ImageBatchItem rejected(String fileName, String error) {
+        return new ImageBatchItem(fileName, null, error);
+    }
+}
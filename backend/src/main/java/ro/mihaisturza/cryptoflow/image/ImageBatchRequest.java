@@ -0,0 +1,54 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.util.List;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
+
+/**
+ * Many BMPs sharing one key, mode and priority. The files are validated one by one while the batch is
+ * processed, so one bad file is reported on its own instead of failing the whole batch.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ImageBatchRequest {
+    // Every multipart part counts towards Tomcat's parameter limit (10000)
+    public static final int MAX_FILES = 1000;
+
+    @NotEmpty(message = "At least one file is required")
+    @Size(max = MAX_FILES, message = "A batch can hold at most " + MAX_FILES + " files")
+    private List<MultipartFile> files;
+
+    @NotBlank(message = "Encryption key is required")
+    @Size(min = 16, max = 32, message = "Encryption key must be between 16 and 32 characters")
+    private String key;
+
+    @NotBlank(message = "Mode is required")
+    @Pattern(regexp = "^(ECB|CBC)$", message = "Mode must be either ECB or CBC")
+    private String mode;
+
+    @Min(value = 0, message = "Priority must be between 0 and 9")
+    @Max(value = 9, message = "Priority must be between 0 and 9")
+    private Integer priority; // optional, 0 (default) to 9
+
+    public EncryptionMode getEncryptionMode() {
+        return EncryptionMode.valueOf("AES_" + mode.toUpperCase());
+    }
+
+    public int getPriorityOrDefault() {
+        return priority != null ? priority : MessagePublisherService.DEFAULT_PRIORITY;
+    }
+}
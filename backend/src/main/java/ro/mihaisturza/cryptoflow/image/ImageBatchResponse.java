@@ -0,0 +1,17 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ImageBatchResponse {
+    private UUID batchId;
+    private int accepted;
+    private List<ImageBatchItem> items; // in upload order
+}
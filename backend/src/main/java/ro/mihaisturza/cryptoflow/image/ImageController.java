@@ -1,28 +1,44 @@
 package ro.mihaisturza.cryptoflow.image;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
-import ro.mihaisturza.cryptoflow.consumer.ProcessedImage;
+import ro.mihaisturza.cryptoflow.job.ImageBatchStatus;
+import ro.mihaisturza.cryptoflow.job.ImageJob;
+import ro.mihaisturza.cryptoflow.job.JobStatusBroadcaster;
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
 
 @RestController
 @RequestMapping("/images")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = { HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.CONTENT_RANGE })
 @Profile("backend")
 public class ImageController {
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private JobStatusService jobStatusService;
+
+    @Autowired
+    private JobStatusBroadcaster jobStatusBroadcaster;
+
     @PostMapping("/encrypt")
     public ResponseEntity<ImageProcessingResponse> encryptImage(@Valid ImageProcessingRequest request) {
         return processImage(request, Operation.ENCRYPT);
@@ -35,14 +51,62 @@ public class ImageController {
 
     private ResponseEntity<ImageProcessingResponse> processImage(ImageProcessingRequest request, Operation operation) {
         UUID id = imageService.processImage(request.getFile(), request.getKey(), operation,
-                request.getEncryptionMode());
+                request.getEncryptionMode(), request.getPriorityOrDefault());
         return ResponseEntity.ok(new ImageProcessingResponse(id));
 
     }
 
+    @PostMapping("/encrypt/batch")
+    public ResponseEntity<ImageBatchResponse> encryptBatch(@Valid ImageBatchRequest request) {
+        return processBatch(request, Operation.ENCRYPT);
+    }
+
+    @PostMapping("/decrypt/batch")
+    public ResponseEntity<ImageBatchResponse> decryptBatch(@Valid ImageBatchRequest request) {
+        return processBatch(request, Operation.DECRYPT);
+    }
+
+    private ResponseEntity<ImageBatchResponse> processBatch(ImageBatchRequest request, Operation operation) {
+        return ResponseEntity.ok(imageService.processBatch(request.getFiles(), request.getKey(), operation,
+                request.getEncryptionMode(), request.getPriorityOrDefault()));
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<ImageBatchStatus> getBatchStatus(@PathVariable String batchId) {
+        return ResponseEntity.of(jobStatusService.findBatch(batchId));
+    }
+
     @GetMapping("/processed")
-    public ResponseEntity<List<ProcessedImage>> getProcessedImages() {
-        List<ProcessedImage> processedImages = imageService.getProcessedImages();
-        return ResponseEntity.ok(processedImages);
+    public ResponseEntity<ProcessedImagePage> getProcessedImages(@RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(imageService.getProcessedImages(limit, cursor));
+    }
+
+    @GetMapping("/{id}/data")
+    public ResponseEntity<Resource> getProcessedImageData(@PathVariable String id) {
+        // Range requests on Resource bodies are answered with 206 by Spring MVC
+        return imageService.getProcessedImageData(id)
+                .<ResponseEntity<Resource>>map(resource -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("image/bmp"))
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(resource.getFilename(), StandardCharsets.UTF_8).build().toString())
+                        .body(resource))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/status")
+    public ResponseEntity<ImageJob> getStatus(@PathVariable String id) {
+        return ResponseEntity.of(jobStatusService.find(id));
+    }
+
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus(@PathVariable String id) {
+        return jobStatusBroadcaster.subscribe(id);
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAllStatuses() {
+        return jobStatusBroadcaster.subscribeAll();
     }
 }
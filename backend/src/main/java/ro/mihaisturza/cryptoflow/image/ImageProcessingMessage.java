@@ -1,6 +1,6 @@
 package ro.mihaisturza.cryptoflow.image;
 
-import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import lombok.AllArgsConstructor;
@@ -10,13 +10,17 @@ import lombok.Setter;
 @AllArgsConstructor
 @Getter
 @Setter
-public class ImageProcessingMessage implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
+public class ImageProcessingMessage {
     private UUID id;
-    private byte[] imageData;
+    private ByteBuffer imageData; // inline payload, null when the image is staged
+    private String payloadReference; // staging store reference, null when the image is inline
+    private String payloadHash; // hex SHA-256 of the staged payload, null when the image is inline
+    private long payloadSize;
     private String symmetricKey;
     private Operation operation;
     private EncryptionMode encryptionMode;
     private String imageName;
+    private long publishedAt; // epoch millis, set by the publisher
+    private ImageTile tile; // null for whole-image jobs
+    private BmpHeader header; // parsed by the backend before publishing, null if unknown
 }
@@ -2,6 +2,8 @@ package ro.mihaisturza.cryptoflow.image;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
@@ -10,6 +12,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
 import ro.mihaisturza.cryptoflow.image.validation.ValidBMPFile;
 
 @NoArgsConstructor
@@ -18,7 +21,7 @@ import ro.mihaisturza.cryptoflow.image.validation.ValidBMPFile;
 @Setter
 public class ImageProcessingRequest {
     @NotNull(message = "File is required")
-    @ValidBMPFile(maxSize = 100 * 1024 * 1024) // 100MB default
+    @ValidBMPFile
     private MultipartFile file;
 
     @NotBlank(message = "Encryption key is required")
@@ -29,7 +32,15 @@ public class ImageProcessingRequest {
     @Pattern(regexp = "^(ECB|CBC)$", message = "Mode must be either ECB or CBC")
     private String mode;
 
+    @Min(value = 0, message = "Priority must be between 0 and 9")
+    @Max(value = 9, message = "Priority must be between 0 and 9")
+    private Integer priority; // optional, 0 (default) to 9
+
     public EncryptionMode getEncryptionMode() {
         return EncryptionMode.valueOf("AES_" + mode.toUpperCase());
     }
+
+    public int getPriorityOrDefault() {
+        return priority != null ? priority : MessagePublisherService.DEFAULT_PRIORITY;
+    }
 }
@@ -1,23 +1,50 @@
 package ro.mihaisturza.cryptoflow.image;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
-import ro.mihaisturza.cryptoflow.consumer.ProcessedImage;
+import ro.mihaisturza.cryptoflow.amqp.UnconfirmedPublishException;
 import ro.mihaisturza.cryptoflow.consumer.ProcessedImageRepository;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageSummary;
+import ro.mihaisturza.cryptoflow.job.ImageJob;
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.staging.StagingStore;
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+import ro.mihaisturza.cryptoflow.tiling.TilePlanner;
 
 @Service
 @Profile("backend")
 public class ImageService {
     private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+    private static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
     private MessagePublisherService messagePublisherService;
@@ -25,14 +52,45 @@ public class ImageService {
     @Autowired
     private ProcessedImageRepository processedImageRepository;
 
-    public UUID processImage(MultipartFile file, String key, Operation operation, EncryptionMode mode) {
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private StagingStore stagingStore;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private TilePlanner tilePlanner;
+
+    @Autowired
+    private JobStatusService jobStatusService;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${cryptoflow.staging.inline-threshold}")
+    private long inlineThreshold;
+
+    @Value("${cryptoflow.batch.publish-size:100}")
+    private int publishBatchSize;
+
+    public UUID processImage(MultipartFile file, String key, Operation operation, EncryptionMode mode,
+            int priority) {
+        UUID id = UUID.randomUUID();
         try {
-            byte[] imageData = file.getBytes();
             String imageName = file.getOriginalFilename();
-            UUID id = UUID.randomUUID();
+            ImageProcessingMessage message = readUpload(id, file, key, operation, mode);
+
+            // The status row must exist before any consumer can pick the job up
+            jobStatusService.queued(id, imageName, operation, mode);
+
+            if (tilePlanner.publishTiles(message, priority)) {
+                return id;
+            }
 
-            ImageProcessingMessage message = new ImageProcessingMessage(id, imageData, key, operation, mode, imageName);
-            messagePublisherService.publishMessage(message);
+            messagePublisherService.publishMessage(message, priority);
 
             logger.info("Published image processing message for image: {} (ID: {})", imageName, id);
 
@@ -40,11 +98,174 @@ public class ImageService {
         } catch (Exception e) {
             e.printStackTrace();
             logger.error("Failed to process image: {}", file.getOriginalFilename(), e);
+            jobStatusService.failed(id, e.getMessage());
             throw new RuntimeException("Failed to process image", e);
         }
     }
 
-    public List<ProcessedImage> getProcessedImages() {
-        return processedImageRepository.findAllByOrderByProcessedAtDesc();
+    /**
+     * Queues every valid file of a batch under one batch id. Files are validated and read one at a time;
+     * their status rows are inserted and their messages published in groups of cryptoflow.batch.publish-size,
+     * each group waiting once for publisher confirms. Invalid files and messages the broker did not confirm are
+     * reported per file in the response. An image whose confirm timed out is reported failed even though its
+     * message may still reach the queue; a consumer then processes it, but its job stays FAILED.
+     */
+    public ImageBatchResponse processBatch(List<MultipartFile> files, String key, Operation operation,
+            EncryptionMode mode, int priority) {
+        UUID batchId = UUID.randomUUID();
+        List<ImageBatchItem> items = new ArrayList<>(files.size());
+        List<ImageBatchItem> pendingItems = new ArrayList<>(publishBatchSize);
+        List<ImageJob> pendingJobs = new ArrayList<>(publishBatchSize);
+        List<ImageProcessingMessage> pendingMessages = new ArrayList<>(publishBatchSize);
+
+        for (MultipartFile file : files) {
+            String imageName = file.getOriginalFilename();
+            Set<ConstraintViolation<ImageProcessingRequest>> violations = validator
+                    .validateValue(ImageProcessingRequest.class, "file", file);
+            if (!violations.isEmpty()) {
+                items.add(ImageBatchItem.rejected(imageName, violations.iterator().next().getMessage()));
+                continue;
+            }
+
+            UUID id = UUID.randomUUID();
+            ImageJob job = ImageJob.queued(id, batchId, imageName, operation.name(), mode.name());
+            ImageBatchItem item = ImageBatchItem.accepted(imageName, id);
+            items.add(item);
+            try {
+                ImageProcessingMessage message = readUpload(id, file, key, operation, mode);
+                if (message.getPayloadReference() != null) {
+                    // Staged images may be tiled, which publishes on its own
+                    jobStatusService.queued(List.of(job));
+                    if (!tilePlanner.publishTiles(message, priority)) {
+                        messagePublisherService.publishMessage(message, priority);
+                    }
+                    continue;
+                }
+
+                pendingItems.add(item);
+                pendingJobs.add(job);
+                pendingMessages.add(message);
+                if (pendingMessages.size() == publishBatchSize) {
+                    publishBatch(pendingItems, pendingJobs, pendingMessages, priority);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to queue image {} of batch {}", imageName, batchId, e);
+                jobStatusService.failed(id, e.getMessage());
+                item.setId(null);
+                item.setError("Failed to queue image: " + e.getMessage());
+            }
+        }
+        publishBatch(pendingItems, pendingJobs, pendingMessages, priority);
+
+        int accepted = (int) items.stream().filter(item -> item.getId() != null).count();
+        logger.info("Queued {} of {} images of batch {}", accepted, files.size(), batchId);
+        return new ImageBatchResponse(batchId, accepted, items);
+    }
+
+    private void publishBatch(List<ImageBatchItem> items, List<ImageJob> jobs, List<ImageProcessingMessage> messages,
+            int priority) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            jobStatusService.queued(jobs);
+            messagePublisherService.publishConfirmed(messages, priority);
+        } catch (UnconfirmedPublishException e) {
+            logger.error("Failed to queue {} of {} batch messages", e.getUnconfirmed().size(), messages.size(), e);
+            Set<UUID> unconfirmed = e.getUnconfirmed().stream().map(ImageProcessingMessage::getId)
+                    .collect(Collectors.toSet());
+            failItems(items.stream().filter(item -> unconfirmed.contains(item.getId())).toList(), e);
+        } catch (RuntimeException e) {
+            logger.error("Failed to queue {} batch messages", messages.size(), e);
+            failItems(items, e);
+        } finally {
+            items.clear();
+            jobs.clear();
+            messages.clear();
+        }
+    }
+
+    private void failItems(List<ImageBatchItem> items, RuntimeException failure) {
+        for (ImageBatchItem item : items) {
+            jobStatusService.failed(item.getId(), failure.getMessage());
+            item.setId(null);
+            item.setError("Failed to queue image: " + failure.getMessage());
+        }
+    }
+
+    /**
+     * Small images ride inline in the message; larger ones are streamed from the multipart temp file
+     * into the staging store, hashed on the way, without ever landing on the heap. The parsed header
+     * travels with the message, so consumers don't parse it again.
+     */
+    private ImageProcessingMessage readUpload(UUID id, MultipartFile file, String key, Operation operation,
+            EncryptionMode mode) throws IOException {
+        Timer.Sample readSample = pipelineMetrics.start();
+        ByteBuffer imageData = null;
+        String payloadReference = null;
+        String payloadHash = null;
+        BmpHeader header;
+        if (file.getSize() > inlineThreshold) {
+            try (InputStream content = file.getInputStream()) {
+                header = BmpHeader.read(content, file.getSize());
+            }
+            MessageDigest digest = PayloadHash.newDigest();
+            try (InputStream content = new DigestInputStream(file.getInputStream(), digest)) {
+                payloadReference = stagingStore.stage(id, content);
+            }
+            payloadHash = PayloadHash.toHex(digest);
+        } else {
+            imageData = ByteBuffer.wrap(file.getBytes());
+            header = BmpHeader.parse(imageData, file.getSize());
+        }
+        pipelineMetrics.stop(readSample, PipelineMetrics.UPLOAD_READ, operation, mode, file.getSize());
+
+        return new ImageProcessingMessage(id, imageData, payloadReference, payloadHash, file.getSize(), key,
+                operation, mode, file.getOriginalFilename(), 0, null, header);
+    }
+
+    public ProcessedImagePage getProcessedImages(int limit, String cursor) {
+        Limit pageLimit = Limit.of(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+
+        List<ProcessedImageSummary> items;
+        if (cursor == null || cursor.isBlank()) {
+            items = processedImageRepository.findLatest(pageLimit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            items = processedImageRepository.findLatestBefore(LocalDateTime.parse(position[0]), position[1],
+                    pageLimit);
+        }
+
+        String nextCursor = null;
+        if (items.size() == pageLimit.max()) {
+            ProcessedImageSummary last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getProcessedAt(), last.getId());
+        }
+        return new ProcessedImagePage(items, nextCursor);
+    }
+
+    public Optional<ProcessedImageResource> getProcessedImageData(String id) {
+        return processedImageRepository.findSummaryById(id).map(summary -> new ProcessedImageResource(
+                imageStorage, summary.getStorageKey(), summary.getImageName(), summary.getImageSize()));
+    }
+
+    private static String encodeCursor(LocalDateTime processedAt, String id) {
+        String position = processedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\|", 2);
+            if (position.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(position[0]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
     }
 }
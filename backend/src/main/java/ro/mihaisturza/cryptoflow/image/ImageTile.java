@@ -0,0 +1,20 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One block-aligned slice of a staged image's pixel region. Offsets are absolute positions in the staged file.
+ */
+@AllArgsConstructor
+@Getter
+public class ImageTile {
+    private int index;
+    private int count;
+    private long offset;
+    private long length;
+
+    public boolean isLast() {
+        return index == count - 1;
+    }
+}
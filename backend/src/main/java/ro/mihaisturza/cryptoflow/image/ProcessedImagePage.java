@@ -0,0 +1,16 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageSummary;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ProcessedImagePage {
+    private List<ProcessedImageSummary> items;
+    private String nextCursor; // null on the last page
+}
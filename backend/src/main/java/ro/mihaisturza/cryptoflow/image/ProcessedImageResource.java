@@ -0,0 +1,47 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+
+/**
+ * A processed image streamed from the {@link ImageStorage}. Spring MVC serves
+ * HTTP range requests for Resource bodies by skipping to the range start, which
+ * storage streams do without reading the skipped bytes.
+ */
+public class ProcessedImageResource extends AbstractResource {
+    private final ImageStorage imageStorage;
+    private final String storageKey;
+    private final String fileName;
+    private final long size;
+
+    public ProcessedImageResource(ImageStorage imageStorage, String storageKey, String fileName, long size) {
+        this.imageStorage = imageStorage;
+        this.storageKey = storageKey;
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Processed image " + storageKey;
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return imageStorage.open(storageKey);
+    }
+}
@@ -3,20 +3,27 @@ package ro.mihaisturza.cryptoflow.image.validation;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
+import ro.mihaisturza.cryptoflow.crypto.CryptoEngine;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
 
 public class BMPValidator implements ConstraintValidator<ValidBMPFile, MultipartFile> {
-    private static final byte[] BMP_SIGNATURE = { 0x42, 0x4D }; // "BM"
-    private static final int BMP_HEADER_SIZE = 54;
+    // Injected when Spring's validator creates the instance; validators created by hand keep the default
+    @Value("${cryptoflow.upload.max-size:100MB}")
+    private DataSize configuredMaxSize = DataSize.ofMegabytes(100);
 
     private long maxSize;
 
     @Override
     public void initialize(ValidBMPFile constraintAnnotation) {
-        this.maxSize = constraintAnnotation.maxSize();
+        long limit = constraintAnnotation.maxSize() >= 0 ? constraintAnnotation.maxSize()
+                : configuredMaxSize.toBytes();
+        this.maxSize = Math.min(limit, CryptoEngine.MAX_IMAGE_SIZE);
     }
 
     @Override
@@ -40,24 +47,13 @@ public class BMPValidator implements ConstraintValidator<ValidBMPFile, Multipart
             return false;
         }
 
-        // Check BMP signature
+        // Parse the header only; the pixel data is never read
         try (InputStream inputStream = file.getInputStream()) {
-            byte[] header = new byte[BMP_HEADER_SIZE];
-            int bytesRead = inputStream.read(header);
-
-            if (bytesRead < BMP_HEADER_SIZE) {
-                addViolation(context, "File is too small to be a valid BMP (minimum 54 bytes required)");
-                return false;
-            }
-
-            if (header[0] != BMP_SIGNATURE[0] || header[1] != BMP_SIGNATURE[1]) {
-                addViolation(context, String.format("Invalid BMP signature. Expected 'BM', got '%c%c'",
-                        (char) header[0], (char) header[1]));
-                return false;
-            }
-
+            BmpHeader.read(inputStream, file.getSize());
             return true;
-
+        } catch (IllegalArgumentException e) {
+            addViolation(context, e.getMessage());
+            return false;
         } catch (IOException e) {
             addViolation(context, "Failed to read file for validation: " + e.getMessage());
             return false;
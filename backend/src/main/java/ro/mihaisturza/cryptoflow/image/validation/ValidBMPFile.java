@@ -13,5 +13,5 @@ public @interface ValidBMPFile {
     Class<?>[] groups() default {};
     Class<? extends Payload>[] payload() default {};
     
-    long maxSize() default 100 * 1024 * 1024; // 100MB default
+    long maxSize() default -1; // -1: cryptoflow.upload.max-size; capped at CryptoEngine.MAX_IMAGE_SIZE
 }
\ No newline at end of file
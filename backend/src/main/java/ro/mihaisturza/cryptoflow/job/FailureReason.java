@@ -0,0 +1,8 @@
+package ro.mihaisturza.cryptoflow.job;
+
+/**
+ * Why a processing attempt failed. Invalid input fails the job at once; timeouts and crashes are retried.
+ */
+public enum FailureReason {
+    INVALID_INPUT, TIMEOUT, CRASH
+}
@@ -0,0 +1,16 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ImageBatchStatus {
+    private String batchId;
+    private long total;
+    private Map<JobStatus, Long> counts; // statuses with no jobs are left out
+}
@@ -0,0 +1,81 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Lifecycle of one upload, from the moment it is queued until its result is stored or it fails.
+ * Read and written through {@link ImageJobStore}; the entity only declares the schema.
+ */
+@Entity
+@Table(name = "image_jobs", indexes = {
+        @Index(name = "idx_image_jobs_batch_id", columnList = "batch_id")
+})
+@NoArgsConstructor
+@Getter
+@Setter
+public class ImageJob {
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "batch_id", length = 36)
+    private String batchId; // null for single uploads
+
+    @Column(name = "image_name")
+    private String imageName;
+
+    @Column(name = "operation", nullable = false)
+    private String operation;
+
+    @Column(name = "encryption_mode", nullable = false)
+    private String encryptionMode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private JobStatus status;
+
+    @Column(name = "queued_at", nullable = false)
+    private LocalDateTime queuedAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "error", length = 512)
+    private String error; // the last failure, also while a retry is pending
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "failure_reason", length = 16)
+    private FailureReason failureReason;
+
+    @Column(name = "attempts")
+    private Integer attempts; // failed attempts so far
+
+    public static ImageJob queued(UUID id, UUID batchId, String imageName, String operation,
+            String encryptionMode) {
+        ImageJob job = new ImageJob();
+        job.setId(id.toString());
+        job.setBatchId(batchId != null ? batchId.toString() : null);
+        job.setImageName(imageName);
+        job.setOperation(operation);
+        job.setEncryptionMode(encryptionMode);
+        job.setStatus(JobStatus.QUEUED);
+        job.setQueuedAt(LocalDateTime.now());
+        job.setAttempts(0);
+        return job;
+    }
+}
@@ -0,0 +1,130 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Job status rows. Every transition is a conditional update, so redelivered messages and tiles finishing
+ * on several consumers move a job forward at most once and never out of DONE or FAILED.
+ */
+@Repository
+public class ImageJobStore {
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts new jobs in one JDBC batch, so a batch upload costs one round trip per publish batch.
+     */
+    public void createJobs(List<ImageJob> jobs) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO image_jobs (id, batch_id, image_name, operation, encryption_mode, status, queued_at, attempts) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                jobs, jobs.size(), (ps, job) -> {
+                    ps.setString(1, job.getId());
+                    ps.setString(2, job.getBatchId());
+                    ps.setString(3, job.getImageName());
+                    ps.setString(4, job.getOperation());
+                    ps.setString(5, job.getEncryptionMode());
+                    ps.setString(6, job.getStatus().name());
+                    ps.setTimestamp(7, Timestamp.valueOf(job.getQueuedAt()));
+                    ps.setInt(8, job.getAttempts() != null ? job.getAttempts() : 0);
+                });
+    }
+
+    public boolean markProcessing(UUID id) {
+        return jdbcTemplate.update("UPDATE image_jobs SET status = ?, started_at = ? WHERE id = ? AND status = ?",
+                JobStatus.PROCESSING.name(), now(), id.toString(), JobStatus.QUEUED.name()) > 0;
+    }
+
+    public boolean markDone(UUID id) {
+        return jdbcTemplate.update(
+                "UPDATE image_jobs SET status = ?, started_at = COALESCE(started_at, ?), finished_at = ? "
+                        + "WHERE id = ? AND status IN (?, ?)",
+                JobStatus.DONE.name(), now(), now(), id.toString(), JobStatus.QUEUED.name(),
+                JobStatus.PROCESSING.name()) > 0;
+    }
+
+    public boolean markFailed(UUID id, String error) {
+        return jdbcTemplate.update(
+                "UPDATE image_jobs SET status = ?, finished_at = ?, error = ? WHERE id = ? AND status IN (?, ?)",
+                JobStatus.FAILED.name(), now(), truncate(error), id.toString(), JobStatus.QUEUED.name(),
+                JobStatus.PROCESSING.name()) > 0;
+    }
+
+    /**
+     * Fails a job after its last processing attempt, recording why and how many attempts it took.
+     */
+    public boolean markFailed(UUID id, FailureReason reason, int attempts, String error) {
+        return jdbcTemplate.update(
+                "UPDATE image_jobs SET status = ?, finished_at = ?, error = ?, failure_reason = ?, attempts = ? "
+                        + "WHERE id = ? AND status IN (?, ?)",
+                JobStatus.FAILED.name(), now(), truncate(error), reason.name(), attempts, id.toString(),
+                JobStatus.QUEUED.name(), JobStatus.PROCESSING.name()) > 0;
+    }
+
+    /**
+     * Puts a job whose attempt failed back to QUEUED while its retry waits, keeping the failure on the row.
+     */
+    public boolean markRetrying(UUID id, FailureReason reason, int attempts, String error) {
+        return jdbcTemplate.update(
+                "UPDATE image_jobs SET status = ?, error = ?, failure_reason = ?, attempts = ? "
+                        + "WHERE id = ? AND status IN (?, ?)",
+                JobStatus.QUEUED.name(), truncate(error), reason.name(), attempts, id.toString(),
+                JobStatus.QUEUED.name(), JobStatus.PROCESSING.name()) > 0;
+    }
+
+    public Optional<ImageJob> findJob(String id) {
+        return jdbcTemplate.query(
+                "SELECT id, batch_id, image_name, operation, encryption_mode, status, queued_at, started_at, finished_at, error, "
+                        + "failure_reason, attempts "
+                        + "FROM image_jobs WHERE id = ?",
+                (rs, rowNum) -> {
+                    ImageJob job = new ImageJob();
+                    job.setId(rs.getString("id"));
+                    job.setBatchId(rs.getString("batch_id"));
+                    job.setImageName(rs.getString("image_name"));
+                    job.setOperation(rs.getString("operation"));
+                    job.setEncryptionMode(rs.getString("encryption_mode"));
+                    job.setStatus(JobStatus.valueOf(rs.getString("status")));
+                    job.setQueuedAt(toLocalDateTime(rs.getTimestamp("queued_at")));
+                    job.setStartedAt(toLocalDateTime(rs.getTimestamp("started_at")));
+                    job.setFinishedAt(toLocalDateTime(rs.getTimestamp("finished_at")));
+                    job.setError(rs.getString("error"));
+                    String failureReason = rs.getString("failure_reason");
+                    job.setFailureReason(failureReason != null ? FailureReason.valueOf(failureReason) : null);
+                    job.setAttempts(rs.getInt("attempts"));
+                    return job;
+                }, id).stream().findFirst();
+    }
+
+    public Map<JobStatus, Long> countByStatus(String batchId) {
+        Map<JobStatus, Long> counts = new EnumMap<>(JobStatus.class);
+        jdbcTemplate.query("SELECT status, COUNT(*) AS jobs FROM image_jobs WHERE batch_id = ? GROUP BY status",
+                rs -> {
+                    counts.put(JobStatus.valueOf(rs.getString("status")), rs.getLong("jobs"));
+                }, batchId);
+        return counts;
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,9 @@
+package ro.mihaisturza.cryptoflow.job;
+
+public enum JobStatus {
+    QUEUED, PROCESSING, DONE, FAILED;
+
+    public boolean isFinished() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,109 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes job status events to browsers over server-sent events. Each backend instance binds its own
+ * auto-delete queue to the status exchange, so every instance sees every event whichever consumer raised it.
+ * Clients either follow a single job or every job; nothing here touches the database after subscribing.
+ */
+@Component
+@Profile("backend")
+public class JobStatusBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusBroadcaster.class);
+
+    private static final String EVENT_NAME = "status";
+
+    private final Map<String, Set<SseEmitter>> jobSubscribers = new ConcurrentHashMap<>();
+    private final Set<SseEmitter> allSubscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private JobStatusService jobStatusService;
+
+    @Value("${cryptoflow.jobs.sse-timeout:30m}")
+    private Duration sseTimeout;
+
+    /**
+     * Follows one job. The current status is sent straight away, so a job that finished before the client
+     * connected is still reported; the stream completes once the job is DONE or FAILED.
+     */
+    public SseEmitter subscribe(String jobId) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        Set<SseEmitter> subscribers = jobSubscribers.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet());
+        subscribers.add(emitter);
+        Runnable remove = () -> unsubscribe(jobId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        jobStatusService.find(jobId).ifPresent(job -> send(emitter, job));
+        return emitter;
+    }
+
+    /**
+     * Follows every job, for views such as the processed image list that refresh when any job finishes.
+     */
+    public SseEmitter subscribeAll() {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        allSubscribers.add(emitter);
+        emitter.onCompletion(() -> allSubscribers.remove(emitter));
+        emitter.onTimeout(() -> allSubscribers.remove(emitter));
+        emitter.onError(error -> allSubscribers.remove(emitter));
+        return emitter;
+    }
+
+    @RabbitListener(bindings = @QueueBinding(value = @Queue(exclusive = "true", autoDelete = "true"),
+            exchange = @Exchange(name = JobStatusConfig.EXCHANGE_NAME, type = ExchangeTypes.FANOUT)),
+            containerFactory = JobStatusConfig.STATUS_CONTAINER_FACTORY)
+    public void onStatus(ImageJob job) {
+        Set<SseEmitter> subscribers = jobSubscribers.get(job.getId());
+        if (subscribers != null) {
+            subscribers.forEach(emitter -> send(emitter, job));
+        }
+        allSubscribers.forEach(emitter -> send(emitter, job));
+    }
+
+    /**
+     * Emitters completed before Spring MVC takes them over, e.g. for a job that had already finished, never
+     * run their completion callbacks, so completing one here also unsubscribes it.
+     */
+    private void send(SseEmitter emitter, ImageJob job) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).id(job.getId() + ":" + job.getStatus()).data(job));
+            if (job.getStatus().isFinished() && !allSubscribers.contains(emitter)) {
+                emitter.complete();
+                unsubscribe(job.getId(), emitter);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away
+            logger.debug("Dropping status subscriber of job {}", job.getId(), e);
+            emitter.completeWithError(e);
+            allSubscribers.remove(emitter);
+            unsubscribe(job.getId(), emitter);
+        }
+    }
+
+    private void unsubscribe(String jobId, SseEmitter emitter) {
+        jobSubscribers.computeIfPresent(jobId, (id, current) -> {
+            current.remove(emitter);
+            return current.isEmpty() ? null : current;
+        });
+    }
+}
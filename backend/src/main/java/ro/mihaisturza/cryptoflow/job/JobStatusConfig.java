@@ -0,0 +1,45 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Configuration
+public class JobStatusConfig {
+    public static final String EXCHANGE_NAME = "cryptoflow.job-status";
+    public static final String STATUS_CONTAINER_FACTORY = "jobStatusListenerContainerFactory";
+
+    /**
+     * Status changes fan out to every backend instance, each of which pushes them to its own SSE clients.
+     */
+    @Bean
+    public FanoutExchange jobStatusExchange() {
+        return new FanoutExchange(EXCHANGE_NAME, true, false);
+    }
+
+    /**
+     * Status events are small JSON documents. The converter is deliberately not a bean, so the
+     * application-wide image message converter stays the unique one Spring Boot wires into RabbitTemplate.
+     */
+    static Jackson2JsonMessageConverter statusMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    @Bean(STATUS_CONTAINER_FACTORY)
+    @Profile("backend")
+    public SimpleRabbitListenerContainerFactory jobStatusListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            ObjectMapper objectMapper) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(statusMessageConverter(objectMapper));
+        return factory;
+    }
+}
@@ -0,0 +1,112 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * Moves jobs through QUEUED, PROCESSING and DONE/FAILED, back to QUEUED while a retry waits, and
+ * announces every transition on the job status exchange. A lost announcement only delays a client until
+ * it reconnects and reads the row, so publishing failures are logged rather than failing the job.
+ */
+@Service
+public class JobStatusService {
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusService.class);
+
+    @Autowired
+    private ImageJobStore imageJobStore;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MessageConverter statusMessageConverter;
+
+    @PostConstruct
+    public void createConverter() {
+        statusMessageConverter = JobStatusConfig.statusMessageConverter(objectMapper);
+    }
+
+    public void queued(UUID id, String imageName, Operation operation, EncryptionMode mode) {
+        queued(List.of(ImageJob.queued(id, null, imageName, operation.name(), mode.name())));
+    }
+
+    public void queued(List<ImageJob> jobs) {
+        imageJobStore.createJobs(jobs);
+        jobs.forEach(this::announce);
+    }
+
+    public void processing(UUID id) {
+        if (imageJobStore.markProcessing(id)) {
+            announce(id);
+        }
+    }
+
+    public void done(UUID id) {
+        if (imageJobStore.markDone(id)) {
+            announce(id);
+        }
+    }
+
+    public void failed(UUID id, String error) {
+        if (imageJobStore.markFailed(id, error)) {
+            announce(id);
+        }
+    }
+
+    public void failed(UUID id, FailureReason reason, int attempts, String error) {
+        if (imageJobStore.markFailed(id, reason, attempts, error)) {
+            announce(id);
+        }
+    }
+
+    public void retrying(UUID id, FailureReason reason, int attempts, String error) {
+        if (imageJobStore.markRetrying(id, reason, attempts, error)) {
+            announce(id);
+        }
+    }
+
+    public Optional<ImageJob> find(String id) {
+        return imageJobStore.findJob(id);
+    }
+
+    public Optional<ImageBatchStatus> findBatch(String batchId) {
+        Map<JobStatus, Long> counts = imageJobStore.countByStatus(batchId);
+        if (counts.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new ImageBatchStatus(batchId, counts.values().stream().mapToLong(Long::longValue).sum(),
+                counts));
+    }
+
+    private void announce(UUID id) {
+        imageJobStore.findJob(id.toString()).ifPresent(this::announce);
+    }
+
+    private void announce(ImageJob job) {
+        try {
+            rabbitTemplate.send(JobStatusConfig.EXCHANGE_NAME, "",
+                    statusMessageConverter.toMessage(job, new MessageProperties()));
+        } catch (AmqpException e) {
+            logger.warn("Failed to announce status {} of job {}", job.getStatus(), job.getId(), e);
+        }
+    }
+}
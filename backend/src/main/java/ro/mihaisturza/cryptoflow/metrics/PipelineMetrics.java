@@ -0,0 +1,73 @@
+package ro.mihaisturza.cryptoflow.metrics;
+
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * Latency of each stage of the upload, queue, crypto and persistence pipeline,
+ * recorded as the {@code cryptoflow.pipeline.stage} timer tagged by stage,
+ * operation, mode and image size bucket.
+ */
+@Component
+public class PipelineMetrics {
+    public static final String METRIC_NAME = "cryptoflow.pipeline.stage";
+
+    public static final String UPLOAD_READ = "upload.read";
+    public static final String PUBLISH = "publish";
+    public static final String PUBLISH_BATCH = "publish.batch"; // a confirmed batch, by its largest message
+    public static final String QUEUE_DWELL = "queue.dwell";
+    public static final String PAYLOAD_READ = "payload.read";
+    public static final String TEMP_FILE_WRITE = "native.input.write";
+    public static final String NATIVE_PROCESS = "native.process";
+    public static final String OUTPUT_READ = "native.output.read";
+    public static final String CRYPTO = "crypto";
+    public static final String CRYPTO_STREAM = "crypto.stream"; // read, crypto and storage write interleaved
+    public static final String STORAGE_WRITE = "storage.write";
+    public static final String DB_SAVE = "db.save";
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String stage, Operation operation, EncryptionMode mode, long size) {
+        sample.stop(timer(stage, operation, mode, size));
+    }
+
+    public void record(String stage, Operation operation, EncryptionMode mode, long size, Duration duration) {
+        timer(stage, operation, mode, size).record(duration);
+    }
+
+    private Timer timer(String stage, Operation operation, EncryptionMode mode, long size) {
+        return Timer.builder(METRIC_NAME)
+                .tag("stage", stage)
+                .tag("operation", operation.name())
+                .tag("mode", mode.name())
+                .tag("size", sizeBucket(size))
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static String sizeBucket(long size) {
+        long megabytes = size / (1024 * 1024);
+        if (megabytes < 1) {
+            return "lt1MB";
+        } else if (megabytes < 10) {
+            return "1-10MB";
+        } else if (megabytes < 50) {
+            return "10-50MB";
+        }
+        return "gte50MB";
+    }
+}
@@ -0,0 +1,108 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Staging store on a directory shared by the backend and the consumers
+ * (a docker volume in the compose setup).
+ */
+@Component
+public class FileSystemStagingStore implements StagingStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemStagingStore.class);
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private final Path root;
+
+    public FileSystemStagingStore(@Value("${cryptoflow.staging.path}") String root) throws IOException {
+        this.root = Paths.get(root);
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public String stage(UUID id, InputStream content) throws IOException {
+        String reference = id.toString();
+        Path target = resolve(reference);
+        Path partial = target.resolveSibling(reference + PARTIAL_SUFFIX);
+
+        // Write under a temporary name so a consumer never sees a half-written payload
+        long size = Files.copy(content, partial, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Staged payload {} ({} bytes)", reference, size);
+        return reference;
+    }
+
+    @Override
+    public InputStream open(String reference) throws IOException {
+        try {
+            return Files.newInputStream(resolve(reference));
+        } catch (NoSuchFileException e) {
+            throw new StagedPayloadException("Staged payload " + reference + " does not exist", e);
+        }
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    @Override
+    public List<String> deleteOlderThan(Instant cutoff) throws IOException {
+        List<Path> expired;
+        try (Stream<Path> files = Files.list(root)) {
+            expired = files.filter(file -> isOlderThan(file, cutoff)).toList();
+        }
+
+        List<String> deleted = new ArrayList<>();
+        for (Path file : expired) {
+            String name = file.getFileName().toString();
+            if (Files.deleteIfExists(file) && !name.endsWith(PARTIAL_SUFFIX)) {
+                deleted.add(name);
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        if (!isPayload(file.getFileName().toString())) {
+            return false; // not ours; leave it alone
+        }
+        try {
+            return Files.isRegularFile(file) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false; // deleted concurrently
+        }
+    }
+
+    private static boolean isPayload(String name) {
+        String reference = name.endsWith(PARTIAL_SUFFIX) ? name.substring(0, name.length() - PARTIAL_SUFFIX.length())
+                : name;
+        try {
+            return UUID.fromString(reference).toString().equals(reference);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Path resolve(String reference) {
+        // References are job ids; parsing them keeps message content from escaping the staging directory
+        return root.resolve(UUID.fromString(reference).toString());
+    }
+}
@@ -0,0 +1,73 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of a staged payload, computed while it is written and checked while it is read back,
+ * so a consumer never processes a payload that was truncated or replaced in the store.
+ */
+public final class PayloadHash {
+    private PayloadHash() {
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Fails if the bytes fed to the digest don't hash to the expected value. Messages published
+     * before hashes were recorded carry none and are not checked.
+     */
+    public static void verify(MessageDigest digest, String expected, String reference) throws IOException {
+        if (expected == null) {
+            return;
+        }
+
+        String actual = toHex(digest);
+        if (!actual.equals(expected)) {
+            throw new StagedPayloadException("Staged payload " + reference + " does not match its hash: expected " + expected
+                    + ", got " + actual);
+        }
+    }
+
+    /**
+     * Hashes the content as it is read and checks it against the expected hash once the content ends, failing
+     * that last read. For consumers that process a payload as it streams in rather than reading it up front.
+     */
+    public static InputStream verifying(InputStream content, String expected, String reference) {
+        return new DigestInputStream(content, newDigest()) {
+            private boolean verified;
+
+            @Override
+            public int read() throws IOException {
+                return checkEnd(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checkEnd(super.read(b, off, len));
+            }
+
+            private int checkEnd(int read) throws IOException {
+                if (read == -1 && !verified) {
+                    verified = true;
+                    verify(getMessageDigest(), expected, reference);
+                }
+                return read;
+            }
+        };
+    }
+}
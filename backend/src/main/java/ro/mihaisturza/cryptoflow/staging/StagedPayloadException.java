@@ -0,0 +1,17 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import java.io.IOException;
+
+/**
+ * A staged payload that is missing, shorter than declared or doesn't match its hash. Reading it again
+ * can't succeed, so the job fails instead of being retried.
+ */
+public class StagedPayloadException extends IOException {
+    public StagedPayloadException(String message) {
+        super(message);
+    }
+
+    public StagedPayloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
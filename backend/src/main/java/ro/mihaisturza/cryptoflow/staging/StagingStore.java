@@ -0,0 +1,32 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Holds uploaded image payloads outside the message broker so that messages
+ * only carry a reference to them.
+ */
+public interface StagingStore {
+    /**
+     * Streams the content into the store and returns the reference to put in the message.
+     */
+    String stage(UUID id, InputStream content) throws IOException;
+
+    /**
+     * Opens a staged payload; throws {@link StagedPayloadException} if there is none under the reference,
+     * e.g. because it was swept.
+     */
+    InputStream open(String reference) throws IOException;
+
+    void delete(String reference) throws IOException;
+
+    /**
+     * Deletes every payload, including partially written ones, last written before the cutoff,
+     * and returns the references of the complete payloads it removed.
+     */
+    List<String> deleteOlderThan(Instant cutoff) throws IOException;
+}
@@ -0,0 +1,64 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.tiling.TileJobStore;
+
+/**
+ * Garbage-collects the staging store. Consumers delete a payload as soon as its job is stored or rejected;
+ * this sweep removes what is left behind when a message expires or is dropped by the broker, a node dies
+ * mid-upload, or a tiled job is never reduced. The job of an expired payload is marked failed, so clients
+ * waiting on it hear about it instead of waiting forever.
+ */
+@Component
+@Profile("backend")
+public class StagingSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(StagingSweeper.class);
+
+    @Autowired
+    private StagingStore stagingStore;
+
+    @Autowired
+    private TileJobStore tileJobStore;
+
+    @Autowired
+    private JobStatusService jobStatusService;
+
+    @Value("${cryptoflow.staging.retention:24h}")
+    private Duration retention;
+
+    @Scheduled(initialDelayString = "${cryptoflow.staging.sweep-interval:15m}",
+            fixedDelayString = "${cryptoflow.staging.sweep-interval:15m}")
+    public void sweep() {
+        Instant cutoff = Instant.now().minus(retention);
+        try {
+            List<String> expired = stagingStore.deleteOlderThan(cutoff);
+            for (String reference : expired) {
+                // Uploads are staged under their job id; tile results under ids that match no job
+                jobStatusService.failed(UUID.fromString(reference), "Staged payload expired before processing");
+            }
+
+            int tileJobs = tileJobStore.deleteJobsCreatedBefore(LocalDateTime.now().minus(retention));
+            if (!expired.isEmpty() || tileJobs > 0) {
+                logger.info("Swept {} expired staged payloads and {} unfinished tile jobs", expired.size(),
+                        tileJobs);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Staging sweep failed", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed image storage on a directory shared by the backend and the
+ * consumers. Files are named by the SHA-256 of their content, so identical
+ * results are stored once.
+ */
+@Component
+@ConditionalOnProperty(name = "cryptoflow.storage.type", havingValue = "filesystem")
+public class FileSystemImageStorage implements ImageStorage {
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemImageStorage.class);
+
+    private final Path root;
+
+    public FileSystemImageStorage(@Value("${cryptoflow.storage.path}") String root) throws IOException {
+        this.root = Paths.get(root);
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public StoredImage store(InputStream content) throws IOException {
+        Path partial = Files.createTempFile(root, "store-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(partial), digest)) {
+                size = content.transferTo(out);
+            }
+            return moveIntoPlace(partial, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Hashes and writes the buffer straight from its memory, heap or direct.
+     */
+    @Override
+    public StoredImage store(ByteBuffer content) throws IOException {
+        Path partial = Files.createTempFile(root, "store-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            digest.update(content.duplicate());
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                ByteBuffer remaining = content.duplicate();
+                while (remaining.hasRemaining()) {
+                    channel.write(remaining);
+                }
+            }
+            return moveIntoPlace(partial, HexFormat.of().formatHex(digest.digest()), content.remaining());
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    private StoredImage moveIntoPlace(Path partial, String key, long size) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            logger.info("Image {} already stored, reusing it", key);
+        } else {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Stored image {} ({} bytes)", key, size);
+        }
+        return new StoredImage(key, size);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available in this JVM", e);
+        }
+    }
+
+    private Path resolve(String key) {
+        if (!key.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
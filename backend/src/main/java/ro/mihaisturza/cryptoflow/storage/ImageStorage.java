@@ -0,0 +1,31 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores processed images outside of the processed_images metadata table.
+ * Implementations stream content in and out in bounded pieces, so neither
+ * side ever needs the whole image in memory.
+ */
+public interface ImageStorage {
+    /**
+     * Reads the content to its end and stores it. Nothing is left behind if storing fails.
+     */
+    StoredImage store(InputStream content) throws IOException;
+
+    /**
+     * Stores the buffer from its position to its limit, without moving its position. Implementations
+     * write heap and direct buffers without first copying them into an array.
+     */
+    default StoredImage store(ByteBuffer content) throws IOException {
+        return store(new ByteBufferInputStream(content));
+    }
+
+    /**
+     * Opens the stored content. The returned stream skips without reading the skipped bytes,
+     * which is what HTTP range requests rely on.
+     */
+    InputStream open(String key) throws IOException;
+}
@@ -0,0 +1,181 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores images as fixed-size rows in processed_image_chunks, so no single
+ * statement carries more than one chunk.
+ */
+@Component
+@ConditionalOnProperty(name = "cryptoflow.storage.type", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcChunkImageStorage implements ImageStorage {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcChunkImageStorage.class);
+
+    private static final String INSERT_CHUNK =
+            "INSERT INTO processed_image_chunks (storage_key, chunk_index, chunk_offset, data) VALUES (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final int chunkSize;
+
+    public JdbcChunkImageStorage(@Value("${cryptoflow.storage.chunk-size}") int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public StoredImage store(InputStream content) throws IOException {
+        String key = UUID.randomUUID().toString();
+        byte[] buffer = new byte[chunkSize];
+        long size = 0;
+        int chunkIndex = 0;
+
+        try {
+            int read;
+            while ((read = content.readNBytes(buffer, 0, chunkSize)) > 0) {
+                byte[] data = read == chunkSize ? buffer : Arrays.copyOf(buffer, read);
+                jdbcTemplate.update(INSERT_CHUNK, key, chunkIndex++, size, data);
+                size += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Streamed content may fail on its own, e.g. a payload that doesn't match its hash
+            deleteChunks(key);
+            throw e;
+        }
+
+        logger.info("Stored image {} in {} chunks ({} bytes)", key, chunkIndex, size);
+        return new StoredImage(key, size);
+    }
+
+    /**
+     * Binds each chunk as a stream over its slice of the buffer, so no chunk-sized array is allocated.
+     */
+    @Override
+    public StoredImage store(ByteBuffer content) {
+        String key = UUID.randomUUID().toString();
+        int size = content.remaining();
+        int chunkIndex = 0;
+
+        try {
+            for (int offset = 0; offset < size; offset += chunkSize) {
+                int index = chunkIndex++;
+                int chunkOffset = offset;
+                int length = Math.min(chunkSize, size - offset);
+                ByteBuffer chunk = content.slice(content.position() + offset, length);
+                jdbcTemplate.update(INSERT_CHUNK, statement -> {
+                    statement.setString(1, key);
+                    statement.setInt(2, index);
+                    statement.setLong(3, chunkOffset);
+                    statement.setBinaryStream(4, new ByteBufferInputStream(chunk), length);
+                });
+            }
+        } catch (DataAccessException e) {
+            deleteChunks(key);
+            throw e;
+        }
+
+        logger.info("Stored image {} in {} chunks ({} bytes)", key, chunkIndex, size);
+        return new StoredImage(key, size);
+    }
+
+    @Override
+    public InputStream open(String key) {
+        return new ChunkInputStream(key);
+    }
+
+    private void deleteChunks(String key) {
+        try {
+            jdbcTemplate.update("DELETE FROM processed_image_chunks WHERE storage_key = ?", key);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to clean up chunks of image {}", key, e);
+        }
+    }
+
+    private class ChunkInputStream extends InputStream {
+        private final String key;
+        private long position; // offset of the next byte to return
+        private byte[] chunk = new byte[0];
+        private long chunkOffset;
+
+        ChunkInputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public int read() {
+            if (!ensureData()) {
+                return -1;
+            }
+            return chunk[(int) (position++ - chunkOffset)] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureData()) {
+                return -1;
+            }
+
+            int chunkPosition = (int) (position - chunkOffset);
+            int count = Math.min(length, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            // Only moves the position; the chunk holding it is fetched on the next read
+            if (n <= 0) {
+                return 0;
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.max(0, chunkOffset + chunk.length - position);
+        }
+
+        private boolean ensureData() {
+            if (position >= chunkOffset && position < chunkOffset + chunk.length) {
+                return true;
+            }
+
+            List<ProcessedImageChunk> rows = jdbcTemplate.query(
+                    "SELECT chunk_offset, data FROM processed_image_chunks "
+                            + "WHERE storage_key = ? AND chunk_offset <= ? ORDER BY chunk_offset DESC LIMIT 1",
+                    (rs, rowNum) -> {
+                        ProcessedImageChunk row = new ProcessedImageChunk();
+                        row.setChunkOffset(rs.getLong("chunk_offset"));
+                        row.setData(rs.getBytes("data"));
+                        return row;
+                    },
+                    key, position);
+            if (rows.isEmpty()) {
+                return false;
+            }
+
+            chunk = rows.get(0).getData();
+            chunkOffset = rows.get(0).getChunkOffset();
+            return position < chunkOffset + chunk.length;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One fixed-size piece of a stored image. Mapped so the schema is managed with the
+ * rest of the entities; {@link JdbcChunkImageStorage} reads and writes rows with
+ * plain JDBC so chunks never pile up in a persistence context. Downloads look chunks up by
+ * offset, which the offset index keeps to a single seek per chunk.
+ */
+@Entity
+@Table(name = "processed_image_chunks", indexes = {
+        @Index(name = "idx_processed_image_chunks_offset", columnList = "storage_key, chunk_offset")
+})
+@IdClass(ProcessedImageChunk.ChunkId.class)
+@NoArgsConstructor
+@Getter
+@Setter
+public class ProcessedImageChunk {
+    @Id
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    @Id
+    @Column(name = "chunk_index")
+    private int chunkIndex;
+
+    @Column(name = "chunk_offset", nullable = false)
+    private long chunkOffset;
+
+    @Column(name = "data", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class ChunkId implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String storageKey;
+        private int chunkIndex;
+    }
+}
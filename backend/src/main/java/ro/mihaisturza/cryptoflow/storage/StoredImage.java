@@ -0,0 +1,11 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class StoredImage {
+    private String key;
+    private long size;
+}
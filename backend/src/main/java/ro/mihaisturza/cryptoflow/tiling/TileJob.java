@@ -0,0 +1,44 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A staged image split into tiles. Mapped for the schema only; {@link TileJobStore} uses plain JDBC
+ * so completion can be counted under a row lock.
+ */
+@Entity
+@Table(name = "image_tile_jobs")
+@NoArgsConstructor
+@Getter
+@Setter
+public class TileJob {
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Column(name = "payload_reference", nullable = false)
+    private String payloadReference;
+
+    @Column(name = "header_length", nullable = false)
+    private long headerLength;
+
+    @Column(name = "tile_count", nullable = false)
+    private int tileCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "reduce_claimed_at")
+    private LocalDateTime reduceClaimedAt; // null until a consumer starts assembling the image
+
+    @Column(name = "reduce_claimed_by")
+    private Integer reduceClaimedBy; // index of the tile whose message holds the claim
+}
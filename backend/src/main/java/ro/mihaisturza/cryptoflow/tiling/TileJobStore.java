@@ -0,0 +1,122 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Tracks which tiles of a job are done. Tiles may finish on any consumer and in any order,
+ * so completion is counted under a lock on the job row.
+ */
+@Repository
+public class TileJobStore {
+    /**
+     * What recording a tile did to its job.
+     */
+    public enum Progress {
+        PENDING, DUPLICATE, COMPLETE, REDUCING, UNKNOWN_JOB
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // A reduce claim older than this is taken to be abandoned and can be taken over by any tile
+    @Value("${cryptoflow.tiling.reduce-timeout:10m}")
+    private Duration reduceTimeout;
+
+    public void createJob(UUID jobId, String payloadReference, long headerLength, int tileCount) {
+        jdbcTemplate.update(
+                "INSERT INTO image_tile_jobs (job_id, payload_reference, header_length, tile_count, created_at) VALUES (?, ?, ?, ?, ?)",
+                jobId.toString(), payloadReference, headerLength, tileCount, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    public Optional<TileJob> findJob(UUID jobId) {
+        return jdbcTemplate.query(
+                "SELECT job_id, payload_reference, header_length, tile_count, created_at FROM image_tile_jobs WHERE job_id = ?",
+                (rs, rowNum) -> {
+                    TileJob job = new TileJob();
+                    job.setJobId(rs.getString("job_id"));
+                    job.setPayloadReference(rs.getString("payload_reference"));
+                    job.setHeaderLength(rs.getLong("header_length"));
+                    job.setTileCount(rs.getInt("tile_count"));
+                    job.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                    return job;
+                }, jobId.toString()).stream().findFirst();
+    }
+
+    /**
+     * Records a processed tile. Once every tile is in, the caller that claims the reduce sees COMPLETE and
+     * is the only one to assemble the image. A tile redelivered while another consumer holds the claim sees
+     * REDUCING; the claim passes to it only if it goes stale, or if it is the claiming tile itself coming back,
+     * which means the reduce was interrupted. Other redelivered tiles see DUPLICATE. Either way the first
+     * result of a tile is the one kept.
+     */
+    @Transactional
+    public Progress recordTile(UUID jobId, int tileIndex, String resultReference, long resultSize) {
+        List<Integer> tileCount = jdbcTemplate.queryForList(
+                "SELECT tile_count FROM image_tile_jobs WHERE job_id = ? FOR UPDATE", Integer.class,
+                jobId.toString());
+        if (tileCount.isEmpty()) {
+            return Progress.UNKNOWN_JOB;
+        }
+
+        int inserted = jdbcTemplate.update(
+                "INSERT IGNORE INTO image_tile_results (job_id, tile_index, result_reference, result_size) VALUES (?, ?, ?, ?)",
+                jobId.toString(), tileIndex, resultReference, resultSize);
+        Integer done = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM image_tile_results WHERE job_id = ?",
+                Integer.class, jobId.toString());
+        if (done != null && done.intValue() == tileCount.get(0)) {
+            return claimReduce(jobId, tileIndex) ? Progress.COMPLETE : Progress.REDUCING;
+        }
+        return inserted > 0 ? Progress.PENDING : Progress.DUPLICATE;
+    }
+
+    private boolean claimReduce(UUID jobId, int tileIndex) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update(
+                "UPDATE image_tile_jobs SET reduce_claimed_at = ?, reduce_claimed_by = ? WHERE job_id = ? "
+                        + "AND (reduce_claimed_at IS NULL OR reduce_claimed_by = ? OR reduce_claimed_at < ?)",
+                Timestamp.valueOf(now), tileIndex, jobId.toString(), tileIndex,
+                Timestamp.valueOf(now.minus(reduceTimeout))) > 0;
+    }
+
+    public List<TileResult> findResults(UUID jobId) {
+        return jdbcTemplate.query(
+                "SELECT job_id, tile_index, result_reference, result_size FROM image_tile_results WHERE job_id = ? ORDER BY tile_index",
+                (rs, rowNum) -> {
+                    TileResult result = new TileResult();
+                    result.setJobId(rs.getString("job_id"));
+                    result.setTileIndex(rs.getInt("tile_index"));
+                    result.setResultReference(rs.getString("result_reference"));
+                    result.setResultSize(rs.getLong("result_size"));
+                    return result;
+                }, jobId.toString());
+    }
+
+    @Transactional
+    public void deleteJob(UUID jobId) {
+        jdbcTemplate.update("DELETE FROM image_tile_results WHERE job_id = ?", jobId.toString());
+        jdbcTemplate.update("DELETE FROM image_tile_jobs WHERE job_id = ?", jobId.toString());
+    }
+
+    /**
+     * Drops jobs that were never reduced, e.g. because a tile message expired in the queue.
+     * Returns the number of jobs removed.
+     */
+    @Transactional
+    public int deleteJobsCreatedBefore(LocalDateTime cutoff) {
+        Timestamp createdBefore = Timestamp.valueOf(cutoff);
+        jdbcTemplate.update("DELETE FROM image_tile_results WHERE job_id IN "
+                + "(SELECT job_id FROM image_tile_jobs WHERE created_at < ?)", createdBefore);
+        return jdbcTemplate.update("DELETE FROM image_tile_jobs WHERE created_at < ?", createdBefore);
+    }
+}
@@ -0,0 +1,89 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.ImageTile;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * Splits large staged ECB images into block-aligned tiles and publishes one message per tile,
+ * so every consumer can work on the same image. CBC chains every block to the previous one
+ * and is always processed whole.
+ */
+@Service
+@Profile("backend")
+public class TilePlanner {
+    private static final Logger logger = LoggerFactory.getLogger(TilePlanner.class);
+
+    private static final int AES_BLOCK_SIZE = 16;
+
+    @Autowired
+    private TileJobStore tileJobStore;
+
+    @Autowired
+    private MessagePublisherService messagePublisherService;
+
+    private final boolean enabled;
+    private final long threshold;
+    private final long tileSize;
+
+    public TilePlanner(@Value("${cryptoflow.tiling.enabled:true}") boolean enabled,
+            @Value("${cryptoflow.tiling.threshold:33554432}") long threshold,
+            @Value("${cryptoflow.tiling.tile-size:8388608}") long tileSize) {
+        if (tileSize <= 0 || tileSize % AES_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("cryptoflow.tiling.tile-size must be a positive multiple of 16");
+        }
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Publishes the staged image as tiles, splitting its pixel region at the offset the backend parsed
+     * from the header. Returns false, without publishing anything, when the image should go out as
+     * the given single message instead.
+     */
+    public boolean publishTiles(ImageProcessingMessage message, int priority) {
+        long size = message.getPayloadSize();
+        BmpHeader header = message.getHeader();
+        if (!enabled || message.getEncryptionMode() != EncryptionMode.AES_ECB || size < threshold
+                || message.getPayloadReference() == null || header == null) {
+            return false;
+        }
+
+        UUID id = message.getId();
+        long dataOffset = header.getDataOffset();
+        long pixelLength = header.getPixelLength(size);
+        if (message.getOperation() == Operation.DECRYPT && pixelLength % AES_BLOCK_SIZE != 0) {
+            return false; // not a valid ciphertext; the whole-image path reports it
+        }
+        int tileCount = (int) ((pixelLength + tileSize - 1) / tileSize);
+        if (tileCount < 2) {
+            return false;
+        }
+
+        tileJobStore.createJob(id, message.getPayloadReference(), dataOffset, tileCount);
+        for (int index = 0; index < tileCount; index++) {
+            long offset = dataOffset + index * tileSize;
+            long length = Math.min(tileSize, size - offset);
+            messagePublisherService.publishMessage(new ImageProcessingMessage(id, null,
+                    message.getPayloadReference(), message.getPayloadHash(), length, message.getSymmetricKey(),
+                    message.getOperation(), message.getEncryptionMode(), message.getImageName(), 0,
+                    new ImageTile(index, tileCount, offset, length), header), priority);
+        }
+
+        logger.info("Published image {} (ID: {}) as {} tiles", message.getImageName(), id, tileCount);
+        return true;
+    }
+}
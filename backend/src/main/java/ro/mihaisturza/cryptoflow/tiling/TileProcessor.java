@@ -0,0 +1,183 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImage;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageRepository;
+import ro.mihaisturza.cryptoflow.crypto.JavaCryptoEngine;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.ImageTile;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.staging.StagedPayloadException;
+import ro.mihaisturza.cryptoflow.staging.StagingStore;
+import ro.mihaisturza.cryptoflow.storage.ByteBufferInputStream;
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+import ro.mihaisturza.cryptoflow.storage.StoredImage;
+
+/**
+ * Processes one tile of a split image and, on whichever consumer finishes the last tile, reduces the job:
+ * header + tile results are streamed in order into image storage and the ProcessedImage is saved.
+ * Tiles always use the in-process engine, whatever cryptoflow.crypto.engine selects.
+ */
+@Component
+@Profile("consumer")
+public class TileProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(TileProcessor.class);
+
+    @Autowired
+    private JavaCryptoEngine javaCryptoEngine;
+
+    @Autowired
+    private StagingStore stagingStore;
+
+    @Autowired
+    private TileJobStore tileJobStore;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ProcessedImageRepository processedImageRepository;
+
+    /**
+     * @return true if this call assembled the finished image
+     */
+    public boolean process(ImageProcessingMessage message) throws IOException {
+        ImageTile tile = message.getTile();
+        UUID jobId = message.getId();
+
+        // A tile reads only its own range; the reduce checks the whole staged payload against its hash
+        byte[] input;
+        try (InputStream content = stagingStore.open(message.getPayloadReference())) {
+            content.skipNBytes(tile.getOffset());
+            input = content.readNBytes((int) tile.getLength());
+        }
+        if (input.length != tile.getLength()) {
+            throw new StagedPayloadException(
+                    "Staged image is shorter than tile " + tile.getIndex() + " of job " + jobId);
+        }
+
+        ByteBuffer result = javaCryptoEngine.processEcbTile(input, message.getSymmetricKey(), message.getOperation(),
+                tile.isLast());
+        String resultReference;
+        try (InputStream content = new ByteBufferInputStream(result)) {
+            resultReference = stagingStore.stage(UUID.randomUUID(), content);
+        }
+
+        TileJobStore.Progress progress = tileJobStore.recordTile(jobId, tile.getIndex(), resultReference,
+                result.remaining());
+        logger.info("Processed tile {}/{} of image {} (ID: {}): {}", tile.getIndex() + 1, tile.getCount(),
+                message.getImageName(), jobId, progress);
+
+        return switch (progress) {
+            case PENDING -> false;
+            case DUPLICATE, REDUCING, UNKNOWN_JOB -> {
+                deleteStaged(resultReference);
+                yield false;
+            }
+            case COMPLETE -> {
+                reduce(message, resultReference);
+                yield true;
+            }
+        };
+    }
+
+    private void reduce(ImageProcessingMessage message, String resultReference) throws IOException {
+        UUID jobId = message.getId();
+        TileJob job = tileJobStore.findJob(jobId)
+                .orElseThrow(() -> new IllegalStateException("Tile job " + jobId + " disappeared"));
+        List<TileResult> results = tileJobStore.findResults(jobId);
+        if (results.stream().noneMatch(result -> result.getResultReference().equals(resultReference))) {
+            deleteStaged(resultReference); // redelivered tile; the first result was kept
+        }
+
+        verifyPayload(message, job);
+
+        StoredImage storedImage;
+        try (InputStream content = assemble(job, results)) {
+            storedImage = imageStorage.store(content);
+        }
+
+        processedImageRepository.save(new ProcessedImage(jobId.toString(), message.getImageName(),
+                storedImage.getKey(), storedImage.getSize(), message.getOperation().name(),
+                message.getEncryptionMode().name()));
+        tileJobStore.deleteJob(jobId);
+
+        results.forEach(result -> deleteStaged(result.getResultReference()));
+        deleteStaged(job.getPayloadReference());
+        logger.info("Assembled image {} (ID: {}) from {} tiles", message.getImageName(), jobId, results.size());
+    }
+
+    /**
+     * Reads the whole staged image through its upload hash before anything is stored, so tiles cut from a
+     * corrupted or replaced staging file fail the job instead of completing it.
+     */
+    private void verifyPayload(ImageProcessingMessage message, TileJob job) throws IOException {
+        try (InputStream content = PayloadHash.verifying(stagingStore.open(job.getPayloadReference()),
+                message.getPayloadHash(), job.getPayloadReference())) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * The original header followed by every tile result, each staged file opened only when it is reached.
+     */
+    private InputStream assemble(TileJob job, List<TileResult> results) throws IOException {
+        byte[] header;
+        try (InputStream content = stagingStore.open(job.getPayloadReference())) {
+            header = content.readNBytes((int) job.getHeaderLength());
+        }
+
+        if (header.length != job.getHeaderLength()) {
+            throw new StagedPayloadException(
+                    "Staged image of job " + job.getJobId() + " is shorter than its header");
+        }
+
+        Iterator<TileResult> remaining = results.iterator();
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private boolean headerReturned;
+
+            @Override
+            public boolean hasMoreElements() {
+                return !headerReturned || remaining.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!headerReturned) {
+                    headerReturned = true;
+                    return new ByteBufferInputStream(ByteBuffer.wrap(header));
+                }
+                try {
+                    return stagingStore.open(remaining.next().getResultReference());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    private void deleteStaged(String reference) {
+        try {
+            stagingStore.delete(reference);
+        } catch (IOException e) {
+            logger.warn("Failed to delete staged payload {}", reference, e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A processed tile waiting in the staging store for the rest of its job.
+ */
+@Entity
+@Table(name = "image_tile_results")
+@IdClass(TileResult.TileResultId.class)
+@NoArgsConstructor
+@Getter
+@Setter
+public class TileResult {
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Id
+    @Column(name = "tile_index")
+    private int tileIndex;
+
+    @Column(name = "result_reference", nullable = false)
+    private String resultReference;
+
+    @Column(name = "result_size", nullable = false)
+    private long resultSize;
+
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class TileResultId implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String jobId;
+        private int tileIndex;
+    }
+}
@@ -0,0 +1,82 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.ImageTile;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+class ImageMessageConverterTests {
+    private final ImageMessageConverter converter = new ImageMessageConverter();
+
+    @Test
+    void roundTripsInlineImage() {
+        byte[] image = BmpFixtures.generate(4096);
+        ImageProcessingMessage original = new ImageProcessingMessage(UUID.randomUUID(), ByteBuffer.wrap(image), null,
+                null, image.length, "mySecretKey123456", Operation.DECRYPT, EncryptionMode.AES_CBC, "łódź.bmp", 1234L,
+                null, BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+
+        Message message = converter.toMessage(original, new MessageProperties());
+        ImageProcessingMessage decoded = (ImageProcessingMessage) converter.fromMessage(message);
+
+        assertEquals(original.getId(), decoded.getId());
+        assertEquals(original.getSymmetricKey(), decoded.getSymmetricKey());
+        assertEquals(original.getOperation(), decoded.getOperation());
+        assertEquals(original.getEncryptionMode(), decoded.getEncryptionMode());
+        assertEquals(original.getImageName(), decoded.getImageName());
+        assertEquals(original.getPayloadSize(), decoded.getPayloadSize());
+        assertEquals(original.getPublishedAt(), decoded.getPublishedAt());
+        assertNull(decoded.getPayloadReference());
+        assertNull(decoded.getPayloadHash());
+        assertNull(decoded.getTile());
+        assertEquals(ByteBuffer.wrap(image), decoded.getImageData());
+        assertEquals(BmpFixtures.HEADER_SIZE, decoded.getHeader().getDataOffset());
+        assertEquals(40, decoded.getHeader().getDibHeaderSize());
+        assertEquals(original.getHeader().getWidth(), decoded.getHeader().getWidth());
+        assertEquals(original.getHeader().getHeight(), decoded.getHeader().getHeight());
+        assertEquals(24, decoded.getHeader().getBitsPerPixel());
+    }
+
+    @Test
+    void roundTripsStagedTile() {
+        ImageProcessingMessage original = new ImageProcessingMessage(UUID.randomUUID(), null, "staged-ref",
+                "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", 1L << 33, "mySecretKey123456", Operation.ENCRYPT, EncryptionMode.AES_ECB, null, 0,
+                new ImageTile(3, 7, 54 + 3 * (1L << 33), 1L << 33), null);
+
+        ImageProcessingMessage decoded = (ImageProcessingMessage) converter
+                .fromMessage(converter.toMessage(original, new MessageProperties()));
+
+        assertNull(decoded.getImageData());
+        assertNull(decoded.getImageName());
+        assertNull(decoded.getHeader());
+        assertEquals("staged-ref", decoded.getPayloadReference());
+        assertEquals(original.getPayloadHash(), decoded.getPayloadHash());
+        assertEquals(1L << 33, decoded.getPayloadSize());
+        assertEquals(3, decoded.getTile().getIndex());
+        assertEquals(7, decoded.getTile().getCount());
+        assertEquals(54 + 3 * (1L << 33), decoded.getTile().getOffset());
+        assertEquals(1L << 33, decoded.getTile().getLength());
+    }
+
+    @Test
+    void rejectsTruncatedBody() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(ImageMessageConverter.CONTENT_TYPE);
+
+        assertThrows(MessageConversionException.class,
+                () -> converter.fromMessage(new Message(new byte[] { 1, 0, 0 }, properties)));
+    }
+}
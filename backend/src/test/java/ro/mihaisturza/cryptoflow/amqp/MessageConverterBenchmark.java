@@ -0,0 +1,101 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.SerializerMessageConverter;
+
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+/**
+ * Encode/decode cost of the binary converter against the Java serialization it replaced.
+ * Encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageConverterBenchmark {
+    @Param({ "1024", "1048576", "104857600" })
+    private int imageSize;
+
+    private final ImageMessageConverter binaryConverter = new ImageMessageConverter();
+    private final SerializerMessageConverter serializerConverter = new SerializerMessageConverter();
+
+    private ImageProcessingMessage message;
+    private SerializedMessage serializedMessage;
+    private Message binaryEncoded;
+    private Message serializerEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializerConverter.setAllowedListPatterns(List.of("ro.mihaisturza.cryptoflow.*", "java.lang.*", "java.util.*"));
+
+        byte[] image = BmpFixtures.generate(imageSize);
+        UUID id = UUID.randomUUID();
+        message = new ImageProcessingMessage(id, ByteBuffer.wrap(image), null, null, image.length, "mySecretKey123456",
+                Operation.ENCRYPT, EncryptionMode.AES_CBC, "bench.bmp", System.currentTimeMillis(),
+                null, BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+        serializedMessage = new SerializedMessage(id, image, "mySecretKey123456", Operation.ENCRYPT,
+                EncryptionMode.AES_CBC, "bench.bmp");
+
+        binaryEncoded = binaryConverter.toMessage(message, new MessageProperties());
+        serializerEncoded = serializerConverter.toMessage(serializedMessage, new MessageProperties());
+        System.out.printf("%nimage=%d bytes, binary=%d bytes, serialized=%d bytes%n", image.length,
+                binaryEncoded.getBody().length, serializerEncoded.getBody().length);
+    }
+
+    @Benchmark
+    public Message binaryEncode() {
+        return binaryConverter.toMessage(message, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object binaryDecode() {
+        return binaryConverter.fromMessage(binaryEncoded);
+    }
+
+    @Benchmark
+    public Message serializerEncode() {
+        return serializerConverter.toMessage(serializedMessage, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object serializerDecode() {
+        return serializerConverter.fromMessage(serializerEncoded);
+    }
+
+    @Benchmark
+    public Object binaryRoundTrip() {
+        return binaryConverter.fromMessage(binaryConverter.toMessage(message, new MessageProperties()));
+    }
+
+    @Benchmark
+    public Object serializerRoundTrip() {
+        return serializerConverter.fromMessage(serializerConverter.toMessage(serializedMessage, new MessageProperties()));
+    }
+
+    /**
+     * Shape of ImageProcessingMessage as it was sent with SerializerMessageConverter.
+     */
+    public record SerializedMessage(UUID id, byte[] imageData, String symmetricKey, Operation operation,
+            EncryptionMode encryptionMode, String imageName) implements Serializable {
+    }
+}
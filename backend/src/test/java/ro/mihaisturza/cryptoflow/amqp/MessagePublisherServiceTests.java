@@ -0,0 +1,104 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitOperations.OperationsCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.rabbitmq.client.ConfirmCallback;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+
+class MessagePublisherServiceTests {
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final RabbitOperations operations = mock(RabbitOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<ConfirmCallback> acks = new AtomicReference<>();
+
+    private MessagePublisherService messagePublisherService;
+
+    @BeforeEach
+    void setUp() {
+        messagePublisherService = new MessagePublisherService();
+        ReflectionTestUtils.setField(messagePublisherService, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(messagePublisherService, "pipelineMetrics", new PipelineMetrics(meterRegistry));
+        ReflectionTestUtils.setField(messagePublisherService, "smallThreshold", 2L * 1024 * 1024);
+        ReflectionTestUtils.setField(messagePublisherService, "confirmTimeout", Duration.ofSeconds(1));
+
+        // Runs the batch on a channel that hands out publish sequence numbers 1, 2, 3
+        when(rabbitTemplate.invoke(any(), any(), any())).thenAnswer(invocation -> {
+            acks.set(invocation.getArgument(1));
+            OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        doReturn(1L, 2L, 3L).when(operations).execute(any());
+    }
+
+    @Test
+    void reportsOnlyTheMessagesTheBrokerDidNotConfirm() {
+        List<ImageProcessingMessage> messages = List.of(message(), message(), message());
+        doAnswer(invocation -> {
+            acks.get().handle(1, false);
+            throw new AmqpTimeoutException("Timed out waiting for confirms");
+        }).when(operations).waitForConfirmsOrDie(anyLong());
+
+        UnconfirmedPublishException e = assertThrows(UnconfirmedPublishException.class,
+                () -> messagePublisherService.publishConfirmed(messages, 0));
+
+        assertEquals(messages.subList(1, 3), e.getUnconfirmed());
+        assertNull(meterRegistry.find(PipelineMetrics.METRIC_NAME).tag("stage", PipelineMetrics.PUBLISH_BATCH)
+                .timer());
+    }
+
+    @Test
+    void appliesMultipleAcksToEveryEarlierMessage() {
+        List<ImageProcessingMessage> messages = List.of(message(), message(), message());
+        doAnswer(invocation -> {
+            acks.get().handle(2, true);
+            throw new AmqpTimeoutException("Timed out waiting for confirms");
+        }).when(operations).waitForConfirmsOrDie(anyLong());
+
+        UnconfirmedPublishException e = assertThrows(UnconfirmedPublishException.class,
+                () -> messagePublisherService.publishConfirmed(messages, 0));
+
+        assertEquals(List.of(messages.get(2)), e.getUnconfirmed());
+    }
+
+    @Test
+    void timesAConfirmedBatchAsOneBatchSample() {
+        messagePublisherService.publishConfirmed(List.of(message(), message()), 0);
+
+        assertNotNull(meterRegistry.find(PipelineMetrics.METRIC_NAME).tag("stage", PipelineMetrics.PUBLISH_BATCH)
+                .tag("size", "lt1MB").timer());
+        assertNull(meterRegistry.find(PipelineMetrics.METRIC_NAME).tag("stage", PipelineMetrics.PUBLISH).timer());
+    }
+
+    private static ImageProcessingMessage message() {
+        return new ImageProcessingMessage(UUID.randomUUID(), ByteBuffer.allocate(64), null, null, 64, "key",
+                Operation.ENCRYPT, EncryptionMode.AES_ECB, "test.bmp", 0, null, null);
+    }
+}
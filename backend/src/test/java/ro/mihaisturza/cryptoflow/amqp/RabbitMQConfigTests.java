@@ -0,0 +1,44 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Queue;
+
+class RabbitMQConfigTests {
+    private final RetryPolicy retryPolicy = new RetryPolicy(4, 2, Duration.ofSeconds(5), 2.0);
+
+    @Test
+    void declaresADelayQueuePerClassAndRetryThatFeedsBackIntoItsProcessingQueue() {
+        List<Queue> queues = new RabbitMQConfig().retryQueues(retryPolicy).getDeclarablesByType(Queue.class);
+
+        assertEquals(2 * retryPolicy.getMaxRetries(), queues.size());
+        for (SizeClass sizeClass : SizeClass.values()) {
+            for (int retry = 1; retry <= retryPolicy.getMaxRetries(); retry++) {
+                String name = RabbitMQConfig.retryQueueName(sizeClass, retry);
+                Queue queue = queues.stream().filter(candidate -> candidate.getName().equals(name)).findFirst()
+                        .orElseThrow();
+                Map<String, Object> arguments = queue.getArguments();
+
+                assertEquals((int) retryPolicy.delay(retry).toMillis(), arguments.get("x-message-ttl"));
+                assertEquals("", arguments.get("x-dead-letter-exchange"));
+                assertEquals(sizeClass.getQueueName(), arguments.get("x-dead-letter-routing-key"));
+            }
+        }
+    }
+
+    @Test
+    void deadLettersProcessingQueuesToTheDeadLetterQueue() {
+        RabbitMQConfig config = new RabbitMQConfig();
+
+        for (Queue queue : List.of(config.smallImageQueue(), config.largeImageQueue())) {
+            assertEquals(RabbitMQConfig.DEAD_LETTER_EXCHANGE_NAME, queue.getArguments().get("x-dead-letter-exchange"));
+            assertEquals(RabbitMQConfig.DEAD_LETTER_QUEUE_NAME, queue.getArguments().get("x-dead-letter-routing-key"));
+            assertEquals(RabbitMQConfig.MAX_PRIORITY, queue.getArguments().get("x-max-priority"));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+
+import javax.crypto.BadPaddingException;
+
+import org.junit.jupiter.api.Test;
+
+import ro.mihaisturza.cryptoflow.crypto.CryptoTimeoutException;
+import ro.mihaisturza.cryptoflow.job.FailureReason;
+import ro.mihaisturza.cryptoflow.staging.StagedPayloadException;
+
+class RetryPolicyTests {
+    private final RetryPolicy policy = new RetryPolicy(4, 2, Duration.ofSeconds(5), 2.0);
+
+    @Test
+    void classifiesByCauseChain() {
+        assertEquals(FailureReason.TIMEOUT, RetryPolicy.classify(
+                new RuntimeException("Failed to process image", new CryptoTimeoutException("timed out"))));
+        assertEquals(FailureReason.INVALID_INPUT,
+                RetryPolicy.classify(new IllegalArgumentException("Invalid BMP signature")));
+        assertEquals(FailureReason.INVALID_INPUT, RetryPolicy.classify(
+                new RuntimeException("Failed to process image", new BadPaddingException("bad padding"))));
+        assertEquals(FailureReason.CRASH, RetryPolicy.classify(
+                new RuntimeException("Crypto process failed with exit code 139")));
+        assertEquals(FailureReason.CRASH, RetryPolicy.classify(new IOException("Connection reset")));
+    }
+
+    @Test
+    void failsFastOnBrokenStagedPayloads() {
+        assertEquals(FailureReason.INVALID_INPUT, RetryPolicy.classify(
+                new StagedPayloadException("Staged payload abc does not match its hash")));
+        assertEquals(FailureReason.INVALID_INPUT, RetryPolicy.classify(new StagedPayloadException(
+                "Staged payload abc does not exist", new NoSuchFileException("abc"))));
+        assertEquals(FailureReason.INVALID_INPUT, RetryPolicy.classify(
+                new UncheckedIOException(new StagedPayloadException("Staged image is shorter than tile 3"))));
+    }
+
+    @Test
+    void boundsAttemptsPerReason() {
+        assertFalse(policy.shouldRetry(FailureReason.INVALID_INPUT, 1));
+
+        assertTrue(policy.shouldRetry(FailureReason.TIMEOUT, 1));
+        assertFalse(policy.shouldRetry(FailureReason.TIMEOUT, 2));
+
+        assertTrue(policy.shouldRetry(FailureReason.CRASH, 3));
+        assertFalse(policy.shouldRetry(FailureReason.CRASH, 4));
+        assertEquals(3, policy.getMaxRetries());
+    }
+
+    @Test
+    void delaysGrowExponentially() {
+        assertEquals(Duration.ofSeconds(5), policy.delay(1));
+        assertEquals(Duration.ofSeconds(10), policy.delay(2));
+        assertEquals(Duration.ofSeconds(20), policy.delay(3));
+    }
+
+    @Test
+    void timeoutAttemptsNeverExceedTheOverallLimit() {
+        RetryPolicy singleAttempt = new RetryPolicy(1, 3, Duration.ofSeconds(1), 2.0);
+
+        assertFalse(singleAttempt.shouldRetry(FailureReason.TIMEOUT, 1));
+        assertEquals(0, singleAttempt.getMaxRetries());
+    }
+}
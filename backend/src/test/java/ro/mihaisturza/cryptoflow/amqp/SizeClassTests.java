@@ -0,0 +1,26 @@
+package ro.mihaisturza.cryptoflow.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SizeClassTests {
+    private static final long SMALL_THRESHOLD = 2 * 1024 * 1024;
+
+    @Test
+    void routesJobsUpToTheThresholdToTheSmallQueue() {
+        assertEquals(SizeClass.SMALL, SizeClass.of(0, SMALL_THRESHOLD));
+        assertEquals(SizeClass.SMALL, SizeClass.of(SMALL_THRESHOLD, SMALL_THRESHOLD));
+        assertEquals(SizeClass.LARGE, SizeClass.of(SMALL_THRESHOLD + 1, SMALL_THRESHOLD));
+        assertEquals(SizeClass.LARGE, SizeClass.of(Integer.MAX_VALUE + 1L, SMALL_THRESHOLD));
+    }
+
+    @Test
+    void mapsEachClassToItsOwnQueues() {
+        assertEquals(RabbitMQConfig.SMALL_QUEUE_NAME, SizeClass.SMALL.getQueueName());
+        assertEquals(RabbitMQConfig.LARGE_QUEUE_NAME, SizeClass.LARGE.getQueueName());
+
+        assertEquals("cryptoflow.processing.small.retry.1", RabbitMQConfig.retryQueueName(SizeClass.SMALL, 1));
+        assertEquals("cryptoflow.processing.large.retry.3", RabbitMQConfig.retryQueueName(SizeClass.LARGE, 3));
+    }
+}
@@ -0,0 +1,25 @@
+package ro.mihaisturza.cryptoflow.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class KeyFingerprintTests {
+    @Test
+    void fingerprintsKeysPerSalt() {
+        KeyFingerprint fingerprint = new KeyFingerprint("salt");
+
+        assertEquals(fingerprint.of("mySecretKey123456"), new KeyFingerprint("salt").of("mySecretKey123456"));
+        assertNotEquals(fingerprint.of("mySecretKey123456"), fingerprint.of("otherKey"));
+        assertNotEquals(fingerprint.of("mySecretKey123456"), new KeyFingerprint("pepper").of("mySecretKey123456"));
+    }
+
+    @Test
+    void rejectsAnEmptySalt() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new KeyFingerprint(""));
+        assertTrue(e.getMessage().contains("KEY_FINGERPRINT_SALT"));
+    }
+}
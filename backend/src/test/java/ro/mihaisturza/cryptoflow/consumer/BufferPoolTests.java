@@ -0,0 +1,94 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BufferPoolTests {
+    private static final int MIN_CLASS = 1024;
+    private static final int MAX_CLASS = 16 * 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BufferPool pool = new BufferPool(MIN_CLASS, MAX_CLASS, 2 * MAX_CLASS, meterRegistry);
+
+    @Test
+    void leasesDirectBufferOfRequestedSizeFromItsClass() {
+        try (BufferPool.Lease lease = pool.acquire(3000)) {
+            ByteBuffer buffer = lease.getBuffer();
+            assertTrue(buffer.isDirect());
+            assertEquals(0, buffer.position());
+            assertEquals(3000, buffer.limit());
+            assertEquals(4096, buffer.capacity());
+        }
+    }
+
+    @Test
+    void reusesReleasedBufferOfTheSameClass() {
+        BufferPool.Lease first = pool.acquire(5000);
+        ByteBuffer buffer = first.getBuffer();
+        first.close();
+        first.close(); // a second release must not return the buffer twice
+
+        try (BufferPool.Lease second = pool.acquire(8192); BufferPool.Lease third = pool.acquire(8000)) {
+            assertSame(buffer, second.getBuffer());
+            assertNotSame(buffer, third.getBuffer());
+            assertEquals(8192, second.getBuffer().limit());
+        }
+        assertEquals(2 * 8192, pool.getRetainedBytes());
+    }
+
+    @Test
+    void retainsNoMoreThanTheLimit() {
+        BufferPool.Lease first = pool.acquire(MAX_CLASS);
+        BufferPool.Lease second = pool.acquire(MAX_CLASS);
+        BufferPool.Lease third = pool.acquire(MAX_CLASS);
+        first.close();
+        second.close();
+        third.close();
+
+        assertEquals(2 * MAX_CLASS, pool.getRetainedBytes());
+    }
+
+    @Test
+    void reportsTheCapacityALeaseTakes() {
+        assertEquals(MIN_CLASS, pool.leaseCapacity(1));
+        assertEquals(4096, pool.leaseCapacity(4096));
+        assertEquals(8192, pool.leaseCapacity(4097));
+        assertEquals(MAX_CLASS + 1, pool.leaseCapacity(MAX_CLASS + 1));
+        try (BufferPool.Lease lease = pool.acquire(4097)) {
+            assertEquals(pool.leaseCapacity(4097), lease.getBuffer().capacity());
+        }
+    }
+
+    @Test
+    void allocatesOversizedRequestsWithoutPoolingThem() {
+        try (BufferPool.Lease lease = pool.acquire(MAX_CLASS + 1)) {
+            assertEquals(MAX_CLASS + 1, lease.getBuffer().capacity());
+        }
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals(1, meterRegistry.counter("cryptoflow.buffer.pool.requests", "result", "unpooled").count());
+    }
+
+    @Test
+    void reportsLeasesThatAreNeverReleased() throws InterruptedException {
+        pool.acquire(MIN_CLASS);
+
+        for (int attempt = 0; attempt < 50 && leaks() == 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, leaks());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    private double leaks() {
+        return meterRegistry.counter("cryptoflow.buffer.pool.leaks").count();
+    }
+}
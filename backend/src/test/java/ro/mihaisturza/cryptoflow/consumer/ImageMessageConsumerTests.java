@@ -0,0 +1,154 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.rabbitmq.client.Channel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.amqp.RabbitMQConfig;
+import ro.mihaisturza.cryptoflow.amqp.RetryPolicy;
+import ro.mihaisturza.cryptoflow.amqp.SizeClass;
+import ro.mihaisturza.cryptoflow.cache.ResultCache;
+import ro.mihaisturza.cryptoflow.crypto.CryptoService;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.job.FailureReason;
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.staging.StagingStore;
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+import ro.mihaisturza.cryptoflow.storage.StoredImage;
+import ro.mihaisturza.cryptoflow.tiling.TileProcessor;
+
+/**
+ * Checks when {@link ImageMessageConsumer} settles a delivery: with manual acks, a job is acked only once its
+ * result is stored and its row saved, so a crash before that redelivers it.
+ */
+class ImageMessageConsumerTests {
+    private static final long DELIVERY_TAG = 42;
+
+    private final byte[] image = BmpFixtures.generate(4096);
+    private final CryptoService cryptoService = mock(CryptoService.class);
+    private final ProcessedImageRepository processedImageRepository = mock(ProcessedImageRepository.class);
+    private final StagingStore stagingStore = mock(StagingStore.class);
+    private final ImageStorage imageStorage = mock(ImageStorage.class);
+    private final ResultCache resultCache = mock(ResultCache.class);
+    private final JobStatusService jobStatusService = mock(JobStatusService.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final Channel channel = mock(Channel.class);
+
+    private ImageMessageConsumer consumer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        consumer = new ImageMessageConsumer();
+        ReflectionTestUtils.setField(consumer, "cryptoService", cryptoService);
+        ReflectionTestUtils.setField(consumer, "processedImageRepository", processedImageRepository);
+        ReflectionTestUtils.setField(consumer, "stagingStore", stagingStore);
+        ReflectionTestUtils.setField(consumer, "imageStorage", imageStorage);
+        ReflectionTestUtils.setField(consumer, "admissionController", new MemoryAdmissionController(1L << 30));
+        ReflectionTestUtils.setField(consumer, "resultCache", resultCache);
+        ReflectionTestUtils.setField(consumer, "pipelineMetrics", new PipelineMetrics(meterRegistry));
+        ReflectionTestUtils.setField(consumer, "tileProcessor", mock(TileProcessor.class));
+        ReflectionTestUtils.setField(consumer, "jobStatusService", jobStatusService);
+        ReflectionTestUtils.setField(consumer, "scheduler", new WeightedFairScheduler(1, 4, 1));
+        ReflectionTestUtils.setField(consumer, "bufferPool",
+                new BufferPool(64 * 1024, 1024 * 1024, 4 * 1024 * 1024, meterRegistry));
+        ReflectionTestUtils.setField(consumer, "retryPolicy", new RetryPolicy(4, 2, Duration.ofSeconds(5), 2.0));
+        ReflectionTestUtils.setField(consumer, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(consumer, "streamingThreshold", 64L * 1024 * 1024);
+
+        when(cryptoService.processImage(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(ByteBuffer.wrap(image));
+        when(resultCache.cacheKey(any(ByteBuffer.class), any(), any(), any())).thenReturn("cache-key");
+        when(resultCache.lookup("cache-key")).thenReturn(Optional.empty());
+        when(imageStorage.store(any(ByteBuffer.class))).thenReturn(new StoredImage("stored", image.length));
+        when(processedImageRepository.save(any())).then(returnsFirstArg());
+    }
+
+    @Test
+    void acksOnlyOnceTheResultIsSaved() throws IOException {
+        ImageProcessingMessage message = inlineMessage();
+
+        consumer.processSmallImageMessage(message, channel, DELIVERY_TAG, null);
+
+        InOrder order = inOrder(imageStorage, processedImageRepository, jobStatusService, channel);
+        order.verify(imageStorage).store(any(ByteBuffer.class));
+        order.verify(processedImageRepository).save(any());
+        order.verify(jobStatusService).done(message.getId());
+        order.verify(channel).basicAck(DELIVERY_TAG, false);
+        verify(channel, never()).basicReject(anyLong(), anyBoolean());
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    void deletesAStagedPayloadOnlyAfterTheAck() throws IOException {
+        ImageProcessingMessage message = stagedMessage();
+        when(stagingStore.open("staged")).thenReturn(new ByteArrayInputStream(image));
+
+        consumer.processLargeImageMessage(message, channel, DELIVERY_TAG, null);
+
+        InOrder order = inOrder(processedImageRepository, channel, stagingStore);
+        order.verify(processedImageRepository).save(any());
+        order.verify(channel).basicAck(DELIVERY_TAG, false);
+        order.verify(stagingStore).delete("staged");
+    }
+
+    @Test
+    void doesNotAckAJobWhoseSaveFailed() throws IOException {
+        ImageProcessingMessage message = inlineMessage();
+        when(processedImageRepository.save(any())).thenThrow(new DataAccessResourceFailureException("Database down"));
+
+        consumer.processSmallImageMessage(message, channel, DELIVERY_TAG, null);
+
+        // The job is parked for a retry first; only then is the original delivery settled
+        InOrder order = inOrder(rabbitTemplate, channel, jobStatusService);
+        order.verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.retryQueueName(SizeClass.SMALL, 1)),
+                same(message), any(MessagePostProcessor.class));
+        order.verify(channel).basicAck(DELIVERY_TAG, false);
+        order.verify(jobStatusService).retrying(eq(message.getId()), eq(FailureReason.CRASH), eq(1), any());
+        verify(jobStatusService, never()).done(message.getId());
+    }
+
+    private ImageProcessingMessage inlineMessage() {
+        return new ImageProcessingMessage(UUID.randomUUID(), ByteBuffer.wrap(image), null, null, image.length,
+                "mySecretKey123456", Operation.ENCRYPT, EncryptionMode.AES_ECB, "test.bmp", 0, null, null);
+    }
+
+    private ImageProcessingMessage stagedMessage() {
+        MessageDigest digest = PayloadHash.newDigest();
+        digest.update(image);
+        return new ImageProcessingMessage(UUID.randomUUID(), null, "staged", PayloadHash.toHex(digest), image.length,
+                "mySecretKey123456", Operation.ENCRYPT, EncryptionMode.AES_ECB, "test.bmp", 0, null, null);
+    }
+}
@@ -0,0 +1,90 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.crypto.CryptoEngine;
+
+class MemoryAdmissionControllerTests {
+    private static final int MIN_CLASS = 1024;
+    private static final int MAX_CLASS = 64 * 1024;
+    private static final long BUDGET = 64 * 1024;
+
+    private final BufferPool pool = new BufferPool(MIN_CLASS, MAX_CLASS, 2 * MAX_CLASS, new SimpleMeterRegistry());
+    private final MemoryAdmissionController admissionController = new MemoryAdmissionController(BUDGET);
+
+    @Test
+    void keepsBurstOfJobsJustAboveASizeClassWithinBudget() throws Exception {
+        // 4 KB + 1 byte leases 8 KB for the payload and 8 KB for the result: twice what its size suggests
+        int payloadSize = 4096 + 1;
+        long reservation = pool.leaseCapacity(payloadSize) + pool.leaseCapacity(CryptoEngine.maxOutputSize(payloadSize));
+        assertEquals(16 * 1024, reservation);
+
+        AtomicLong leased = new AtomicLong();
+        AtomicLong peak = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                jobs.add(executor.submit(() -> {
+                    try (MemoryAdmissionController.Admission admission = admissionController.admit(reservation);
+                            BufferPool.Lease payload = pool.acquire(payloadSize);
+                            BufferPool.Lease output = pool.acquire(CryptoEngine.maxOutputSize(payloadSize))) {
+                        long capacity = payload.getBuffer().capacity() + output.getBuffer().capacity();
+                        peak.accumulateAndGet(leased.addAndGet(capacity), Math::max);
+                        Thread.sleep(2);
+                        leased.addAndGet(-capacity);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> job : jobs) {
+                job.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(peak.get() <= BUDGET, "peak of " + peak.get() + " leased bytes exceeds the budget");
+    }
+
+    @Test
+    void blocksJobsUntilTheBudgetIsReleased() throws Exception {
+        MemoryAdmissionController.Admission first = admissionController.admit(BUDGET / 2);
+        MemoryAdmissionController.Admission second = admissionController.admit(BUDGET / 2);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MemoryAdmissionController.Admission> third = executor.submit(() -> admissionController.admit(1));
+            Thread.sleep(50);
+            assertFalse(third.isDone());
+
+            first.close();
+            first.close(); // a second release must not free the budget twice
+            third.get(1, TimeUnit.SECONDS).close();
+            second.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void admitsJobLargerThanTheBudgetAlone() throws Exception {
+        try (MemoryAdmissionController.Admission admission = admissionController.admit(4 * BUDGET)) {
+            // holds the whole budget rather than waiting forever
+        }
+        admissionController.admit(BUDGET).close();
+    }
+}
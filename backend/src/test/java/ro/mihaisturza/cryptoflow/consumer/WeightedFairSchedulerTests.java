@@ -0,0 +1,131 @@
+package ro.mihaisturza.cryptoflow.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import ro.mihaisturza.cryptoflow.amqp.SizeClass;
+
+/**
+ * Runs every scheduler on a single slot, so grants happen one at a time and their order is deterministic.
+ * Waiters record their class when granted and hand the slot straight back.
+ */
+class WeightedFairSchedulerTests {
+    private final WeightedFairScheduler scheduler = new WeightedFairScheduler(1, 4, 1);
+    private final List<SizeClass> grants = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void stopWaiters() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    @Test
+    void grantsFourSmallJobsForEveryLargeOneWhileBothWait() throws Exception {
+        WeightedFairScheduler.Slot held = scheduler.acquire(SizeClass.SMALL);
+        startWaiters(SizeClass.SMALL, 20);
+        startWaiters(SizeClass.LARGE, 5);
+
+        held.close();
+        awaitGrants(25);
+
+        for (int window = 0; window < 25; window += 5) {
+            List<SizeClass> turns = grants.subList(window, window + 5);
+            assertEquals(1, Collections.frequency(turns, SizeClass.LARGE), "grants " + grants);
+        }
+    }
+
+    @Test
+    void givesAClassBackFromIdleNoCreditForTheTimeItHadNoWork() throws Exception {
+        // Small jobs run alone for a while, which the large class must not bank as missed turns
+        for (int i = 0; i < 40; i++) {
+            scheduler.acquire(SizeClass.SMALL).close();
+        }
+
+        WeightedFairScheduler.Slot held = scheduler.acquire(SizeClass.SMALL);
+        startWaiters(SizeClass.LARGE, 10);
+        startWaiters(SizeClass.SMALL, 10);
+
+        held.close();
+        awaitGrants(20);
+
+        assertEquals(2, Collections.frequency(grants.subList(0, 10), SizeClass.LARGE), "grants " + grants);
+    }
+
+    @Test
+    void handsAReleasedSlotToTheClassWhoseTurnItIs() throws Exception {
+        WeightedFairScheduler.Slot held = scheduler.acquire(SizeClass.LARGE);
+        CompletableFuture<WeightedFairScheduler.Slot> large = startHolder(SizeClass.LARGE);
+        CompletableFuture<WeightedFairScheduler.Slot> small = startHolder(SizeClass.SMALL);
+
+        held.close();
+        held.close(); // a second release must not free a second slot
+
+        // The large job waited longer, but the large class just had its turn
+        WeightedFairScheduler.Slot smallSlot = small.get(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertFalse(large.isDone());
+
+        smallSlot.close();
+        large.get(5, TimeUnit.SECONDS).close();
+    }
+
+    private void startWaiters(SizeClass sizeClass, int count) {
+        int waiting = scheduler.getWaiting(sizeClass);
+        for (int i = 0; i < count; i++) {
+            start(() -> {
+                try (WeightedFairScheduler.Slot slot = scheduler.acquire(sizeClass)) {
+                    grants.add(sizeClass);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        await(() -> scheduler.getWaiting(sizeClass) == waiting + count);
+    }
+
+    private CompletableFuture<WeightedFairScheduler.Slot> startHolder(SizeClass sizeClass) {
+        CompletableFuture<WeightedFairScheduler.Slot> slot = new CompletableFuture<>();
+        int waiting = scheduler.getWaiting(sizeClass);
+        start(() -> {
+            try {
+                slot.complete(scheduler.acquire(sizeClass));
+            } catch (InterruptedException e) {
+                slot.completeExceptionally(e);
+            }
+        });
+        await(() -> scheduler.getWaiting(sizeClass) == waiting + 1);
+        return slot;
+    }
+
+    private void start(Runnable waiter) {
+        Thread thread = new Thread(waiter);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private void awaitGrants(int count) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(count, grants.size());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the scheduler");
+            Thread.onSpinWait();
+        }
+    }
+}
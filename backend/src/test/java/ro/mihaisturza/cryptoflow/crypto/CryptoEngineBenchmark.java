@@ -0,0 +1,115 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+import ro.mihaisturza.cryptoflow.consumer.BufferPool;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+
+/**
+ * Compares the in-process and native engines on synthetic 1 KB - 100 MB BMPs.
+ * The native engine needs a built crypto_processor:
+ * mvn -Pbenchmark verify -Dbenchmark.args="CryptoEngineBenchmark -p engine=java,native,native-pool -jvmArgs -Dcryptoflow.crypto.native.processor-path=../crypto/crypto_processor"
+ * Add -p exchange=FILE,SHM to compare the native temp-file and in-place shared memory exchanges, and
+ * -p buffers=heap,pooled -prof gc to compare heap arrays with direct input and pooled output as the consumer uses them.
+ * -p keyCacheEntries=0,256 compares preparing the key for every job with reusing the cached key schedule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CryptoEngineBenchmark {
+    @Param({ "1", "1024", "10240", "102400" })
+    private int sizeKb;
+
+    @Param({ "java" })
+    private String engine;
+
+    @Param({ "FILE" })
+    private NativeCryptoEngine.Exchange exchange;
+
+    @Param({ "AES_ECB", "AES_CBC" })
+    private EncryptionMode mode;
+
+    @Param({ "heap" })
+    private String buffers;
+
+    @Param({ "256" })
+    private int keyCacheEntries;
+
+    private CryptoEngine cryptoEngine;
+    private BufferPool bufferPool;
+    private ByteBuffer plainImage;
+    private ByteBuffer encryptedImage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cryptoEngine = switch (engine) {
+            case "java" -> new JavaCryptoEngine(0, 1024 * 1024, new KeyFingerprint("bench-salt"), keyCacheEntries,
+                    Duration.ofMinutes(10));
+            case "native" -> new NativeCryptoEngine(
+                    System.getProperty("cryptoflow.crypto.native.processor-path", "/app/crypto_processor"),
+                    exchange, "/dev/shm/cryptoflow-bench",
+                    new PipelineMetrics(new SimpleMeterRegistry()));
+            case "native-pool" -> new NativeWorkerPoolEngine(
+                    System.getProperty("cryptoflow.crypto.native.processor-path", "/app/crypto_processor"),
+                    1, Duration.ofSeconds(10), Duration.ofSeconds(1), Duration.ofMinutes(1), keyCacheEntries,
+                    Duration.ofMinutes(10), new PipelineMetrics(new SimpleMeterRegistry()));
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+
+        plainImage = ByteBuffer.wrap(BmpFixtures.generate(sizeKb * 1024));
+        encryptedImage = cryptoEngine.process(plainImage, "mySecretKey123456", Operation.ENCRYPT, mode, "bench.bmp");
+        if (buffers.equals("pooled")) {
+            bufferPool = new BufferPool(64 * 1024, 256 * 1024 * 1024, 512L * 1024 * 1024, new SimpleMeterRegistry());
+            plainImage = direct(plainImage);
+            encryptedImage = direct(encryptedImage);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (cryptoEngine instanceof NativeWorkerPoolEngine pool) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer encrypt() {
+        return process(plainImage, Operation.ENCRYPT);
+    }
+
+    @Benchmark
+    public ByteBuffer decrypt() {
+        return process(encryptedImage, Operation.DECRYPT);
+    }
+
+    private ByteBuffer process(ByteBuffer image, Operation operation) {
+        if (bufferPool == null) {
+            return cryptoEngine.process(image, "mySecretKey123456", operation, mode, "bench.bmp");
+        }
+        try (BufferPool.Lease output = bufferPool.acquire(CryptoEngine.maxOutputSize(image.remaining()))) {
+            return cryptoEngine.process(image, output.getBuffer(), "mySecretKey123456", operation, mode, "bench.bmp");
+        }
+    }
+
+    private static ByteBuffer direct(ByteBuffer image) {
+        return ByteBuffer.allocateDirect(image.remaining()).put(image.duplicate()).flip();
+    }
+}
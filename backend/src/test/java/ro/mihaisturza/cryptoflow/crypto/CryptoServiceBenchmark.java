@@ -0,0 +1,87 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+
+/**
+ * CryptoService.processImage end to end, as the consumer calls it.
+ * The native engine runs against a stub processor that only copies its input to its output,
+ * so its score is the temp file, process spawn and read-back overhead without any AES work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CryptoServiceBenchmark {
+    @Param({ "1", "1024", "10240", "102400" })
+    private int sizeKb;
+
+    @Param({ "java", "native" })
+    private String engine;
+
+    @Param({ "AES_ECB", "AES_CBC" })
+    private EncryptionMode mode;
+
+    private Path stubDirectory;
+    private JavaCryptoEngine javaEngine;
+    private CryptoService cryptoService;
+    private ByteBuffer image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stubDirectory = Files.createTempDirectory("cryptoflow-bench");
+        Path stubProcessor = stubDirectory.resolve("crypto_processor");
+        // crypto_processor <operation> <mode> <key> <input> <output>
+        Files.writeString(stubProcessor, "#!/bin/sh\nexec cp \"$4\" \"$5\"\n");
+        Files.setPosixFilePermissions(stubProcessor, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        javaEngine = new JavaCryptoEngine(0, 1024 * 1024, new KeyFingerprint("bench-salt"), 256,
+                Duration.ofMinutes(10));
+        NativeCryptoEngine nativeEngine = new NativeCryptoEngine(stubProcessor.toString(),
+                NativeCryptoEngine.Exchange.FILE, stubDirectory.toString(),
+                new PipelineMetrics(new SimpleMeterRegistry()));
+
+        cryptoService = new CryptoService();
+        ReflectionTestUtils.setField(cryptoService, "engines", Map.of("java", javaEngine, "native", nativeEngine));
+        ReflectionTestUtils.setField(cryptoService, "engineName", engine);
+        cryptoService.selectEngine();
+
+        image = ByteBuffer.wrap(BmpFixtures.generate(sizeKb * 1024));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        javaEngine.shutdown();
+        Files.deleteIfExists(stubDirectory.resolve("crypto_processor"));
+        Files.deleteIfExists(stubDirectory);
+    }
+
+    @Benchmark
+    public ByteBuffer encrypt() {
+        return cryptoService.processImage(image, "mySecretKey123456", Operation.ENCRYPT, mode, "bench.bmp");
+    }
+}
@@ -0,0 +1,173 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+class JavaCryptoEngineTests {
+    private static final String KEY = "mySecretKey123456";
+
+    // Small chunks to exercise the parallel path
+    private final JavaCryptoEngine engine = new JavaCryptoEngine(4, 4096, new KeyFingerprint("test-salt"), 256,
+            Duration.ofMinutes(10));
+
+    @ParameterizedTest
+    @EnumSource(EncryptionMode.class)
+    void roundTripPreservesImage(EncryptionMode mode) {
+        byte[] image = BmpFixtures.generate(100, 37, 7L); // 300-byte rows, pixel region not block aligned
+
+        byte[] encrypted = bytes(engine.process(ByteBuffer.wrap(image), KEY, Operation.ENCRYPT, mode, "test.bmp"));
+        byte[] decrypted = bytes(engine.process(ByteBuffer.wrap(encrypted), KEY, Operation.DECRYPT, mode, "test.bmp"));
+
+        assertArrayEquals(Arrays.copyOf(image, BmpFixtures.HEADER_SIZE),
+                Arrays.copyOf(encrypted, BmpFixtures.HEADER_SIZE));
+        assertFalse(Arrays.equals(image, Arrays.copyOf(encrypted, image.length)));
+        assertEquals(0, (encrypted.length - BmpFixtures.HEADER_SIZE) % JavaCryptoEngine.AES_BLOCK_SIZE);
+        assertArrayEquals(image, decrypted);
+    }
+
+    @ParameterizedTest
+    @EnumSource(EncryptionMode.class)
+    void directBuffersRoundTripIntoCallerOutput(EncryptionMode mode) {
+        byte[] image = BmpFixtures.generate(100, 37, 7L);
+        ByteBuffer input = ByteBuffer.allocateDirect(image.length).put(image).flip();
+
+        ByteBuffer encryptedOutput = ByteBuffer.allocateDirect(CryptoEngine.maxOutputSize(image.length));
+        ByteBuffer encrypted = engine.process(input, encryptedOutput, KEY, Operation.ENCRYPT, mode, "test.bmp");
+        ByteBuffer decryptedOutput = ByteBuffer.allocateDirect(CryptoEngine.maxOutputSize(encrypted.remaining()));
+        ByteBuffer decrypted = engine.process(encrypted, decryptedOutput, KEY, Operation.DECRYPT, mode, "test.bmp");
+
+        assertTrue(encrypted.isDirect());
+        assertEquals(0, input.position());
+        assertArrayEquals(image, bytes(decrypted));
+        if (mode == EncryptionMode.AES_ECB) {
+            // ECB is deterministic, so the direct path must produce exactly what the heap path does
+            assertArrayEquals(bytes(engine.process(ByteBuffer.wrap(image), KEY, Operation.ENCRYPT, mode, "test.bmp")),
+                    bytes(encrypted));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(EncryptionMode.class)
+    void streamsMatchBufferedProcessing(EncryptionMode mode) throws IOException {
+        byte[] image = BmpFixtures.generate(100, 37, 7L); // pixel region spans three 4096 byte chunks
+
+        byte[] streamEncrypted = stream(image, Operation.ENCRYPT, mode);
+        byte[] bufferEncrypted = bytes(engine.process(ByteBuffer.wrap(image), KEY, Operation.ENCRYPT, mode,
+                "test.bmp"));
+
+        assertArrayEquals(image, bytes(engine.process(ByteBuffer.wrap(streamEncrypted), KEY, Operation.DECRYPT, mode,
+                "test.bmp")));
+        assertArrayEquals(image, stream(bufferEncrypted, Operation.DECRYPT, mode));
+        if (mode == EncryptionMode.AES_ECB) {
+            assertArrayEquals(bufferEncrypted, streamEncrypted);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Operation.class)
+    void ecbTilesMatchWholeImage(Operation operation) {
+        byte[] plain = BmpFixtures.generate(100, 37, 7L);
+        byte[] encrypted = bytes(engine.process(ByteBuffer.wrap(plain), KEY, Operation.ENCRYPT,
+                EncryptionMode.AES_ECB, "test.bmp"));
+        byte[] input = operation == Operation.ENCRYPT ? plain : encrypted;
+        byte[] expected = operation == Operation.ENCRYPT ? encrypted : plain;
+
+        int tileSize = 1024;
+        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        assembled.write(input, 0, BmpFixtures.HEADER_SIZE);
+        for (int offset = BmpFixtures.HEADER_SIZE; offset < input.length; offset += tileSize) {
+            int length = Math.min(tileSize, input.length - offset);
+            ByteBuffer tile = engine.processEcbTile(Arrays.copyOfRange(input, offset, offset + length), KEY,
+                    operation, offset + length == input.length);
+            assembled.write(tile.array(), tile.arrayOffset() + tile.position(), tile.remaining());
+        }
+
+        assertArrayEquals(expected, assembled.toByteArray());
+    }
+
+    @ParameterizedTest
+    @EnumSource(EncryptionMode.class)
+    void streamFailsOnTruncatedImage(EncryptionMode mode) {
+        byte[] image = BmpFixtures.generate(100, 37, 7L);
+        InputStream truncated = new ByteArrayInputStream(image, 0, image.length - 100);
+
+        assertThrows(IOException.class, () -> engine.processStream(truncated, image.length, KEY, Operation.ENCRYPT,
+                mode, "test.bmp").readAllBytes());
+    }
+
+    @ParameterizedTest
+    @EnumSource(EncryptionMode.class)
+    void processesCoreHeaderImagesAtTheirParsedOffset(EncryptionMode mode) throws IOException {
+        byte[] image = coreHeaderImage(100, 37); // pixels start at 26, not 54
+        BmpHeader header = BmpHeader.parse(ByteBuffer.wrap(image), image.length);
+        int dataOffset = (int) header.getDataOffset();
+
+        ByteBuffer output = ByteBuffer.allocate(CryptoEngine.maxOutputSize(image.length));
+        byte[] encrypted = bytes(engine.process(ByteBuffer.wrap(image), output, header, KEY, Operation.ENCRYPT,
+                mode, "core.bmp"));
+        byte[] decrypted = bytes(engine.process(ByteBuffer.wrap(encrypted), KEY, Operation.DECRYPT, mode,
+                "core.bmp"));
+
+        assertEquals(26, dataOffset);
+        assertArrayEquals(Arrays.copyOf(image, dataOffset), Arrays.copyOf(encrypted, dataOffset));
+        assertEquals(0, (encrypted.length - dataOffset) % JavaCryptoEngine.AES_BLOCK_SIZE);
+        assertArrayEquals(image, decrypted);
+
+        try (InputStream streamed = engine.processStream(new ByteArrayInputStream(encrypted), encrypted.length,
+                header, KEY, Operation.DECRYPT, mode, "core.bmp")) {
+            assertArrayEquals(image, streamed.readAllBytes());
+        }
+        assertArrayEquals(image, stream(encrypted, Operation.DECRYPT, mode));
+    }
+
+    private byte[] stream(byte[] image, Operation operation, EncryptionMode mode) throws IOException {
+        try (InputStream result = engine.processStream(new ByteArrayInputStream(image), image.length, KEY, operation,
+                mode, "test.bmp")) {
+            return result.readAllBytes();
+        }
+    }
+
+    /**
+     * A 24 bpp BMP with an OS/2 BITMAPCOREHEADER, whose 12-byte DIB header puts the pixels at offset 26.
+     */
+    private static byte[] coreHeaderImage(int width, int height) {
+        int dataOffset = BmpHeader.FILE_HEADER_SIZE + 12;
+        int rowSize = (width * 3 + 3) / 4 * 4;
+        byte[] image = new byte[dataOffset + rowSize * height];
+        ByteBuffer header = ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B').put((byte) 'M').putInt(image.length).putInt(0).putInt(dataOffset);
+        header.putInt(12).putShort((short) width).putShort((short) height).putShort((short) 1).putShort((short) 24);
+        byte[] pixels = new byte[image.length - dataOffset];
+        new Random(11L).nextBytes(pixels);
+        System.arraycopy(pixels, 0, image, dataOffset, pixels.length);
+        return image;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,59 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+
+class KeyScheduleCacheTests {
+    private final KeyFingerprint keyFingerprint = new KeyFingerprint("test-salt");
+
+    @Test
+    void reusesScheduleForSameKey() {
+        KeyScheduleCache cache = new KeyScheduleCache(keyFingerprint, 4, Duration.ofMinutes(10), 2);
+
+        KeySchedule first;
+        try (KeySchedule schedule = cache.acquire("mySecretKey123456")) {
+            first = schedule;
+        }
+        try (KeySchedule schedule = cache.acquire("mySecretKey123456")) {
+            assertSame(first, schedule);
+        }
+        try (KeySchedule schedule = cache.acquire("otherSecretKey1234")) {
+            assertNotSame(first, schedule);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndZeroesItOnceReleased() {
+        KeyScheduleCache cache = new KeyScheduleCache(keyFingerprint, 1, Duration.ofMinutes(10), 2);
+
+        KeySchedule inUse = cache.acquire("mySecretKey123456");
+        cache.acquire("otherSecretKey1234").close();
+
+        assertEquals(1, cache.size());
+        assertFalse(inUse.getKey().isDestroyed(), "a running job keeps its key");
+        inUse.close();
+        assertTrue(inUse.getKey().isDestroyed());
+    }
+
+    @Test
+    void expiresIdleSchedules() {
+        KeyScheduleCache cache = new KeyScheduleCache(keyFingerprint, 4, Duration.ZERO, 2);
+
+        KeySchedule schedule = cache.acquire("mySecretKey123456");
+        schedule.close();
+
+        assertEquals(1, cache.expire());
+        assertEquals(0, cache.size());
+        assertTrue(schedule.getKey().isDestroyed());
+    }
+}
@@ -0,0 +1,47 @@
+package ro.mihaisturza.cryptoflow.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+class KeyScheduleTests {
+    @Test
+    void keepsAtMostMaxIdleCiphers() throws GeneralSecurityException {
+        KeySchedule schedule = new KeySchedule("mySecretKey123456", 2);
+        Cipher first = schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE);
+        Cipher second = schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE);
+        Cipher third = schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE);
+
+        schedule.release(ParallelCipher.ECB, Cipher.ENCRYPT_MODE, first);
+        schedule.release(ParallelCipher.ECB, Cipher.ENCRYPT_MODE, second);
+        schedule.release(ParallelCipher.ECB, Cipher.ENCRYPT_MODE, third);
+
+        assertEquals(2, schedule.getIdleCount(ParallelCipher.ECB, Cipher.ENCRYPT_MODE));
+        assertEquals(0, schedule.getIdleCount(ParallelCipher.ECB, Cipher.DECRYPT_MODE));
+        assertSame(second, schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE));
+        assertEquals(1, schedule.getIdleCount(ParallelCipher.ECB, Cipher.ENCRYPT_MODE));
+    }
+
+    @Test
+    void rekeysDiscardedCiphersWithTheZeroKey() throws GeneralSecurityException {
+        KeySchedule schedule = new KeySchedule("mySecretKey123456", 2);
+        Cipher cipher = schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE);
+        cipher.update(new byte[8]); // a partial block left mid-operation
+
+        schedule.discard(Cipher.ENCRYPT_MODE, cipher);
+
+        assertEquals(0, schedule.getIdleCount(ParallelCipher.ECB, Cipher.ENCRYPT_MODE));
+        assertNotSame(cipher, schedule.borrow(ParallelCipher.ECB, Cipher.ENCRYPT_MODE));
+        Cipher zeroKey = Cipher.getInstance(ParallelCipher.ECB);
+        zeroKey.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[32], "AES"));
+        assertArrayEquals(zeroKey.doFinal(new byte[16]), cipher.doFinal(new byte[16]));
+    }
+}
@@ -0,0 +1,47 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockMultipartFile;
+
+import ro.mihaisturza.cryptoflow.image.validation.BMPValidator;
+import ro.mihaisturza.cryptoflow.image.validation.ValidBMPFile;
+
+/**
+ * Validation cost of an upload; it should stay flat as the file grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BMPValidatorBenchmark {
+    @Param({ "1048576", "10485760", "104857600" })
+    private int imageSize;
+
+    private final BMPValidator validator = new BMPValidator();
+    private MockMultipartFile file;
+
+    @ValidBMPFile
+    private MockMultipartFile annotated;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchFieldException {
+        validator.initialize(BMPValidatorBenchmark.class.getDeclaredField("annotated").getAnnotation(ValidBMPFile.class));
+        // Leave room for the header and row rounding so the 100 MB case stays under the size limit
+        file = new MockMultipartFile("file", "bench.bmp", "image/bmp", BmpFixtures.generate(imageSize - 4096));
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        // A valid file never touches the context
+        return validator.isValid(file, null);
+    }
+}
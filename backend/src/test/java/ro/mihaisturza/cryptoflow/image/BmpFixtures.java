@@ -0,0 +1,55 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Generates synthetic 24-bit BMPs so tests and benchmarks don't depend on the files in samples/.
+ */
+public final class BmpFixtures {
+    public static final int HEADER_SIZE = 54;
+    private static final int WIDTH = 1024;
+    private static final int ROW_SIZE = WIDTH * 3; // already 4-byte aligned
+
+    private BmpFixtures() {
+    }
+
+    /**
+     * Returns a BMP whose pixel region is at least {@code pixelBytes} long (rounded up to whole rows).
+     * Images smaller than one 1024-pixel row get a single narrower row.
+     */
+    public static byte[] generate(int pixelBytes) {
+        if (pixelBytes < ROW_SIZE) {
+            return generate(Math.max(1, (pixelBytes + 2) / 3), 1, 42L);
+        }
+        int height = (pixelBytes + ROW_SIZE - 1) / ROW_SIZE;
+        return generate(WIDTH, height, 42L);
+    }
+
+    public static byte[] generate(int width, int height, long seed) {
+        int rowSize = ((width * 3 + 3) / 4) * 4;
+        int imageSize = rowSize * height;
+        byte[] data = new byte[HEADER_SIZE + imageSize];
+
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B').put((byte) 'M');
+        header.putInt(data.length);
+        header.putShort((short) 0).putShort((short) 0);
+        header.putInt(HEADER_SIZE);
+        header.putInt(40); // BITMAPINFOHEADER
+        header.putInt(width);
+        header.putInt(height);
+        header.putShort((short) 1);
+        header.putShort((short) 24);
+        header.putInt(0); // BI_RGB
+        header.putInt(imageSize);
+        header.putInt(2835).putInt(2835);
+        header.putInt(0).putInt(0);
+
+        byte[] pixels = new byte[imageSize];
+        new Random(seed).nextBytes(pixels);
+        System.arraycopy(pixels, 0, data, HEADER_SIZE, imageSize);
+        return data;
+    }
+}
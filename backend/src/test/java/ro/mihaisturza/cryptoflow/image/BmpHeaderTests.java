@@ -0,0 +1,85 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class BmpHeaderTests {
+
+    @Test
+    void parsesInfoHeader() {
+        byte[] image = BmpFixtures.generate(101, 7, 1L);
+
+        BmpHeader header = BmpHeader.parse(ByteBuffer.wrap(image), image.length);
+
+        assertEquals(BmpFixtures.HEADER_SIZE, header.getDataOffset());
+        assertEquals(40, header.getDibHeaderSize());
+        assertEquals(101, header.getWidth());
+        assertEquals(7, header.getHeight());
+        assertEquals(24, header.getBitsPerPixel());
+        assertEquals(304, header.getRowStride());
+        assertEquals(304 * 7, header.getExpectedPixelLength());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 12, 52, 56, 108, 124 })
+    void parsesOtherDibHeaderSizes(int dibHeaderSize) {
+        int dataOffset = BmpHeader.FILE_HEADER_SIZE + dibHeaderSize;
+        byte[] image = new byte[dataOffset + 4 * 4 * 3];
+        ByteBuffer buffer = ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'B').put((byte) 'M').putInt(image.length).putInt(0).putInt(dataOffset);
+        buffer.putInt(dibHeaderSize);
+        if (dibHeaderSize == 12) {
+            buffer.putShort((short) 4).putShort((short) 4).putShort((short) 1).putShort((short) 24);
+        } else {
+            buffer.putInt(4).putInt(-4).putShort((short) 1).putShort((short) 24).putInt(0);
+        }
+
+        BmpHeader header = BmpHeader.parse(ByteBuffer.wrap(image), image.length);
+
+        assertEquals(dataOffset, header.getDataOffset());
+        assertEquals(dibHeaderSize, header.getDibHeaderSize());
+        assertEquals(4, header.getWidth());
+        assertEquals(dibHeaderSize == 12 ? 4 : -4, header.getHeight());
+    }
+
+    @Test
+    void acceptsEncryptedImagesThatOnlyGrew() {
+        byte[] image = BmpFixtures.generate(16, 16, 1L);
+        byte[] encrypted = Arrays.copyOf(image, image.length + 32); // IV + padding
+
+        BmpHeader.parse(ByteBuffer.wrap(encrypted), encrypted.length);
+    }
+
+    @Test
+    void rejectsTruncatedPixelData() {
+        byte[] image = BmpFixtures.generate(16, 16, 1L);
+        byte[] truncated = Arrays.copyOf(image, image.length - 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BmpHeader.parse(ByteBuffer.wrap(truncated), truncated.length));
+    }
+
+    @Test
+    void rejectsUnknownDibHeaderSize() {
+        byte[] image = BmpFixtures.generate(16, 16, 1L);
+        ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN).putInt(BmpHeader.FILE_HEADER_SIZE, 64);
+
+        assertThrows(IllegalArgumentException.class, () -> BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+    }
+
+    @Test
+    void rejectsDataOffsetInsideHeader() {
+        byte[] image = BmpFixtures.generate(16, 16, 1L);
+        ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN).putInt(10, 40);
+
+        assertThrows(IllegalArgumentException.class, () -> BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+    }
+}
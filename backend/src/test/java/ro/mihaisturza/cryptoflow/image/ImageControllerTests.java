@@ -0,0 +1,85 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+
+/**
+ * Range requests on {@code /images/{id}/data}, served from a mocked storage.
+ */
+class ImageControllerTests {
+    private final byte[] image = BmpFixtures.generate(4096);
+    private final ImageService imageService = mock(ImageService.class);
+    private final ImageStorage imageStorage = mock(ImageStorage.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ImageController controller = new ImageController();
+        ReflectionTestUtils.setField(controller, "imageService", imageService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        when(imageStorage.open("stored")).then(invocation -> new ByteArrayInputStream(image));
+        when(imageService.getProcessedImageData("found")).then(invocation -> Optional.of(
+                new ProcessedImageResource(imageStorage, "stored", "test.bmp", image.length)));
+        when(imageService.getProcessedImageData("missing")).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void servesTheWholeImageWithoutARange() throws Exception {
+        mockMvc.perform(get("/images/found/data"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/bmp"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, image.length))
+                .andExpect(content().bytes(image));
+    }
+
+    @Test
+    void servesARangeAsPartialContent() throws Exception {
+        mockMvc.perform(get("/images/found/data").header(HttpHeaders.RANGE, "bytes=100-1123"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 100-1123/" + image.length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 1024))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, 100, 1124)));
+    }
+
+    @Test
+    void servesTheTailForASuffixRange() throws Exception {
+        mockMvc.perform(get("/images/found/data").header(HttpHeaders.RANGE, "bytes=-16"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + (image.length - 16) + "-" + (image.length - 1) + "/" + image.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(image, image.length - 16, image.length)));
+    }
+
+    @Test
+    void rejectsARangePastTheEnd() throws Exception {
+        mockMvc.perform(get("/images/found/data").header(HttpHeaders.RANGE, "bytes=" + image.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + image.length));
+    }
+
+    @Test
+    void answersNotFoundForUnknownImages() throws Exception {
+        mockMvc.perform(get("/images/missing/data")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,103 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.metrics.PipelineMetrics;
+import ro.mihaisturza.cryptoflow.staging.FileSystemStagingStore;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.tiling.TilePlanner;
+
+/**
+ * Uploads through {@link ImageService#processImage}, with the staging store on disk and the publisher mocked.
+ */
+class ImageServiceTests {
+    private static final long INLINE_THRESHOLD = 4096;
+
+    @TempDir
+    private Path stagingDirectory;
+
+    private final MessagePublisherService messagePublisherService = mock(MessagePublisherService.class);
+    private FileSystemStagingStore stagingStore;
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stagingStore = new FileSystemStagingStore(stagingDirectory.toString());
+
+        imageService = new ImageService();
+        ReflectionTestUtils.setField(imageService, "messagePublisherService", messagePublisherService);
+        ReflectionTestUtils.setField(imageService, "stagingStore", stagingStore);
+        ReflectionTestUtils.setField(imageService, "pipelineMetrics", new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(imageService, "tilePlanner", mock(TilePlanner.class));
+        ReflectionTestUtils.setField(imageService, "jobStatusService", mock(JobStatusService.class));
+        ReflectionTestUtils.setField(imageService, "inlineThreshold", INLINE_THRESHOLD);
+    }
+
+    @Test
+    void stagesLargeUploadsWithTheHashOfTheirContent() throws IOException {
+        byte[] image = BmpFixtures.generate(3 * 4096);
+
+        UUID id = imageService.processImage(upload(image), "mySecretKey123456", Operation.ENCRYPT,
+                EncryptionMode.AES_ECB, 0);
+
+        ImageProcessingMessage message = published();
+        assertEquals(id, message.getId());
+        assertNull(message.getImageData());
+        assertEquals(image.length, message.getPayloadSize());
+        try (InputStream staged = stagingStore.open(message.getPayloadReference())) {
+            assertArrayEquals(image, staged.readAllBytes());
+        }
+        assertEquals(sha256(image), message.getPayloadHash());
+        assertEquals(BmpFixtures.HEADER_SIZE, message.getHeader().getDataOffset());
+    }
+
+    @Test
+    void keepsSmallUploadsInlineAndUnhashed() throws IOException {
+        byte[] image = BmpFixtures.generate(1024);
+
+        imageService.processImage(upload(image), "mySecretKey123456", Operation.ENCRYPT, EncryptionMode.AES_ECB, 0);
+
+        ImageProcessingMessage message = published();
+        assertNotNull(message.getImageData());
+        assertNull(message.getPayloadReference());
+        assertNull(message.getPayloadHash());
+    }
+
+    private ImageProcessingMessage published() {
+        ArgumentCaptor<ImageProcessingMessage> message = ArgumentCaptor.forClass(ImageProcessingMessage.class);
+        verify(messagePublisherService).publishMessage(message.capture(), anyInt());
+        return message.getValue();
+    }
+
+    private static MockMultipartFile upload(byte[] image) {
+        return new MockMultipartFile("file", "test.bmp", "image/bmp", image);
+    }
+
+    private static String sha256(byte[] content) {
+        MessageDigest digest = PayloadHash.newDigest();
+        digest.update(content);
+        return PayloadHash.toHex(digest);
+    }
+}
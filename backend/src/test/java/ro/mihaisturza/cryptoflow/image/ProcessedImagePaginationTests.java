@@ -0,0 +1,88 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImage;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageRepository;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageSummary;
+
+/**
+ * Walks the processed image list page by page with {@link ImageService#getProcessedImages}, against H2.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class ProcessedImagePaginationTests {
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 18, 12, 0);
+
+    @Autowired
+    private ProcessedImageRepository processedImageRepository;
+
+    private final ImageService imageService = new ImageService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(imageService, "processedImageRepository", processedImageRepository);
+    }
+
+    @Test
+    void walksEveryImageOnceNewestFirst() {
+        // Three images share a timestamp, so the id breaks the tie
+        save("a", NOW.minusMinutes(2));
+        save("b", NOW);
+        save("c", NOW);
+        save("d", NOW);
+        save("e", NOW.minusMinutes(1));
+
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ProcessedImagePage page = imageService.getProcessedImages(2, cursor);
+            page.getItems().stream().map(ProcessedImageSummary::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of("d", "c", "b", "e", "a"), ids);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void endsWithAnEmptyPageWhenTheLastPageIsFull() {
+        save("a", NOW.minusMinutes(1));
+        save("b", NOW);
+
+        ProcessedImagePage first = imageService.getProcessedImages(2, null);
+        ProcessedImagePage last = imageService.getProcessedImages(2, first.getNextCursor());
+
+        assertEquals(2, first.getItems().size());
+        assertEquals(List.of(), last.getItems());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void rejectsACursorItDidNotIssue() {
+        assertThrows(IllegalArgumentException.class, () -> imageService.getProcessedImages(2, "not-a-cursor"));
+    }
+
+    private void save(String id, LocalDateTime processedAt) {
+        ProcessedImage image = new ProcessedImage(id, id + ".bmp", "key-" + id, 1024, "ENCRYPT", "AES_ECB");
+        image.setProcessedAt(processedAt);
+        processedImageRepository.save(image);
+    }
+}
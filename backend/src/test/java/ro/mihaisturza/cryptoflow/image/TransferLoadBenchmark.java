@@ -0,0 +1,193 @@
+package ro.mihaisturza.cryptoflow.image;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import ro.mihaisturza.cryptoflow.storage.ImageStorage;
+import ro.mihaisturza.cryptoflow.storage.StoredImage;
+
+/**
+ * How long a wave of concurrent blob downloads takes on platform vs. virtual request threads.
+ *
+ * Each download streams a {@link ProcessedImageResource} whose storage blocks for chunkLatencyMs per
+ * chunk, like one JDBC chunk query of {@code JdbcChunkImageStorage}. Tomcat keeps its default 200 threads,
+ * so with platform threads a wave larger than that is served in several rounds, while on virtual threads
+ * every transfer proceeds at once. Divide concurrency by the score for sustained transfers per second:
+ * mvn -Pbenchmark verify -Dbenchmark.args="TransferLoadBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferLoadBenchmark {
+    private static final int IMAGE_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    @Param({ "platform", "virtual" })
+    private String threads;
+
+    @Param({ "100", "400", "1600" })
+    private int concurrency;
+
+    @Param({ "50" })
+    private int chunkLatencyMs;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(TransferServer.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + threads.equals("virtual"),
+                        "server.tomcat.threads.max=200",
+                        // Let every client connect, so only request threads limit the transfers in flight
+                        "server.tomcat.accept-count=" + concurrency,
+                        "transfer.chunk-latency-ms=" + chunkLatencyMs,
+                        "logging.level.root=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientExecutor).build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/images/bench/data")).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int downloadWave() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+
+        int downloads = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                throw new IllegalStateException("Download failed with status " + response.join().statusCode());
+            }
+            downloads++;
+        }
+        return downloads;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class })
+    @Import(TransferController.class)
+    static class TransferServer {
+    }
+
+    @RestController
+    static class TransferController {
+        private final ImageStorage storage;
+
+        TransferController(Environment environment) {
+            storage = new SlowImageStorage(environment.getRequiredProperty("transfer.chunk-latency-ms", Long.class));
+        }
+
+        // Same body as ImageController's download: a ProcessedImageResource streamed from storage
+        @GetMapping("/images/bench/data")
+        public ResponseEntity<Resource> download() {
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType("image/bmp"))
+                    .body(new ProcessedImageResource(storage, "bench", "bench.bmp", IMAGE_SIZE));
+        }
+    }
+
+    /**
+     * Serves a fixed image, blocking before each chunk as a chunk query would.
+     */
+    static class SlowImageStorage implements ImageStorage {
+        private final byte[] image = new byte[IMAGE_SIZE];
+        private final long chunkLatencyMs;
+
+        SlowImageStorage(long chunkLatencyMs) {
+            this.chunkLatencyMs = chunkLatencyMs;
+            new Random(42L).nextBytes(image);
+        }
+
+        @Override
+        public StoredImage store(InputStream content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream open(String key) {
+            return new InputStream() {
+                private int position;
+
+                @Override
+                public int read() {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    if (position >= IMAGE_SIZE) {
+                        return -1;
+                    }
+                    if (position % CHUNK_SIZE == 0) {
+                        try {
+                            Thread.sleep(chunkLatencyMs);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    int count = Math.min(length, Math.min(IMAGE_SIZE - position, CHUNK_SIZE - position % CHUNK_SIZE));
+                    System.arraycopy(image, position, buffer, offset, count);
+                    position += count;
+                    return count;
+                }
+            };
+        }
+    }
+}
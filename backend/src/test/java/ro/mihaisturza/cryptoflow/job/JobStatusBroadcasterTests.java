@@ -0,0 +1,115 @@
+package ro.mihaisturza.cryptoflow.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import ro.mihaisturza.cryptoflow.image.ImageController;
+
+/**
+ * Follows jobs over {@code /images/{id}/events} and {@code /images/events}, with status events fed to
+ * {@link JobStatusBroadcaster#onStatus} as the status exchange would.
+ */
+class JobStatusBroadcasterTests {
+    private static final Pattern EVENT_ID = Pattern.compile("^id:(.+)$", Pattern.MULTILINE);
+
+    private final JobStatusService jobStatusService = mock(JobStatusService.class);
+    private final JobStatusBroadcaster broadcaster = new JobStatusBroadcaster();
+    private final UUID jobId = UUID.randomUUID();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "jobStatusService", jobStatusService);
+        ReflectionTestUtils.setField(broadcaster, "sseTimeout", Duration.ofMinutes(1));
+
+        ImageController controller = new ImageController();
+        ReflectionTestUtils.setField(controller, "jobStatusBroadcaster", broadcaster);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void streamsAJobFromItsCurrentStatusUntilItFinishes() throws Exception {
+        when(jobStatusService.find(jobId.toString())).thenReturn(Optional.of(job(jobId, JobStatus.QUEUED)));
+
+        MvcResult result = mockMvc.perform(get("/images/{id}/events", jobId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        broadcaster.onStatus(job(UUID.randomUUID(), JobStatus.DONE)); // another job
+        broadcaster.onStatus(job(jobId, JobStatus.PROCESSING));
+        broadcaster.onStatus(job(jobId, JobStatus.DONE));
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertEquals(List.of(jobId + ":QUEUED", jobId + ":PROCESSING", jobId + ":DONE"), eventIds(result));
+        assertTrue(jobSubscribers().isEmpty(), "the finished stream is unsubscribed");
+    }
+
+    @Test
+    void reportsAJobThatFinishedBeforeTheClientConnected() throws Exception {
+        when(jobStatusService.find(jobId.toString())).thenReturn(Optional.of(job(jobId, JobStatus.FAILED)));
+
+        MvcResult result = mockMvc.perform(get("/images/{id}/events", jobId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertEquals(List.of(jobId + ":FAILED"), eventIds(result));
+        assertTrue(jobSubscribers().isEmpty());
+    }
+
+    @Test
+    void keepsStreamingEveryJobToAllJobSubscribers() throws Exception {
+        UUID otherJobId = UUID.randomUUID();
+
+        MvcResult result = mockMvc.perform(get("/images/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        broadcaster.onStatus(job(jobId, JobStatus.DONE));
+        broadcaster.onStatus(job(otherJobId, JobStatus.FAILED));
+
+        assertEquals(List.of(jobId + ":DONE", otherJobId + ":FAILED"), eventIds(result));
+        assertEquals(1, allSubscribers().size(), "finished jobs don't end the all-jobs stream");
+    }
+
+    private static List<String> eventIds(MvcResult result) throws Exception {
+        Matcher matcher = EVENT_ID.matcher(result.getResponse().getContentAsString());
+        return matcher.results().map(match -> match.group(1)).toList();
+    }
+
+    private Set<?> allSubscribers() {
+        return (Set<?>) ReflectionTestUtils.getField(broadcaster, "allSubscribers");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> jobSubscribers() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(broadcaster, "jobSubscribers");
+    }
+
+    private static ImageJob job(UUID id, JobStatus status) {
+        ImageJob job = ImageJob.queued(id, null, "test.bmp", "ENCRYPT", "AES_ECB");
+        job.setStatus(status);
+        return job;
+    }
+}
@@ -0,0 +1,347 @@
+package ro.mihaisturza.cryptoflow.load;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.convert.DurationStyle;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.job.JobStatusConfig;
+
+/**
+ * Drives POST /images/encrypt on a {@link LocalPipeline} at a fixed rate and reports throughput, end-to-end
+ * latency (request start to the DONE/FAILED status event), queue depth and heap. Requests are sent open-loop:
+ * each starts at its scheduled time whether or not earlier ones have finished, and latency is measured from that
+ * time, so a pipeline that falls behind shows it in the percentiles rather than by slowing the load down.
+ *
+ * Arguments are key=value pairs; keys with a dot are passed on to both application contexts:
+ * mvn -Pload verify -Dload.args="rate=20 duration=60s mix=16KB:70,1MB:25,32MB:5 cryptoflow.consumer.small.concurrency=4"
+ */
+public class LoadHarness {
+    private static final String KEY = "loadHarnessKey1234";
+    private static final String BOUNDARY = "cryptoflow-load-boundary";
+
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration drainTimeout;
+    private final Duration sampleInterval;
+    private final SizeMix sizeMix;
+    private final String mode;
+    private final Path resultFile;
+    private final Map<String, String> pipelineProperties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Integer, byte[]> images = new HashMap<>();
+    private final Map<String, Long> startedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> finishedAt = new ConcurrentHashMap<>();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final List<Long> acceptLatencies = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile long maxQueueDepth;
+    private volatile long maxHeapUsed;
+    private volatile long maxDirectUsed;
+    private volatile long measureFrom;
+
+    LoadHarness(Map<String, String> options) {
+        Map<String, String> remaining = new HashMap<>(options);
+        this.rate = Double.parseDouble(option(remaining, "rate", "10"));
+        this.duration = DurationStyle.detectAndParse(option(remaining, "duration", "30s"));
+        this.warmup = DurationStyle.detectAndParse(option(remaining, "warmup", "5s"));
+        this.drainTimeout = DurationStyle.detectAndParse(option(remaining, "drain", "60s"));
+        this.sampleInterval = DurationStyle.detectAndParse(option(remaining, "sample-interval", "250ms"));
+        this.sizeMix = new SizeMix(option(remaining, "mix", "16KB:70,1MB:25,32MB:5"));
+        this.mode = option(remaining, "mode", "CBC");
+        this.resultFile = Path.of(option(remaining, "result", "target/load-result.json"));
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+
+        // Anything else is a property for the application contexts
+        this.pipelineProperties = new HashMap<>();
+        remaining.forEach((key, value) -> {
+            if (!key.contains(".")) {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+            pipelineProperties.put(key, value);
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Devtools' restarter would re-run main with the contexts' arguments instead of these; it only reads the
+        // system property, not the application arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new LoadHarness(options).run();
+        // Non-daemon threads of the embedded server and the broker stand-in may linger after the contexts close
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        for (int size : sizeMix.sizes()) {
+            images.put(size, BmpFixtures.generate(size));
+        }
+
+        try (LocalPipeline pipeline = new LocalPipeline(pipelineProperties)) {
+            SimpleMessageListenerContainer statusListener = listenForStatus(pipeline);
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> sample(pipeline), 0, sampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                long sendStart = System.nanoTime();
+                long sendNanos = drive(pipeline.baseUri());
+                drain(sendStart + sendNanos);
+                report(sendNanos);
+            } finally {
+                sampler.shutdownNow();
+                statusListener.stop();
+            }
+        }
+    }
+
+    /**
+     * Sends requests on virtual threads at their scheduled times until the warmup and duration have passed.
+     */
+    private long drive(URI baseUri) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI encrypt = baseUri.resolve("/images/encrypt");
+        Random random = new Random(42);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + warmup.toNanos() + duration.toNanos();
+        measureFrom = start + warmup.toNanos();
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long sequence = 0;; sequence++) {
+                long scheduled = start + sequence * intervalNanos;
+                if (scheduled >= end) {
+                    break;
+                }
+                LockSupport.parkNanos(scheduled - System.nanoTime());
+                int size = sizeMix.pick(random);
+                long number = sequence;
+                senders.submit(() -> send(client, encrypt, scheduled, number, size));
+            }
+            // Closing the executor waits for the last uploads to be accepted
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void send(HttpClient client, URI encrypt, long scheduled, long sequence, int size) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(encrypt)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(body(sequence, size))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long accepted = System.nanoTime();
+            if (response.statusCode() != 200) {
+                rejected.incrementAndGet();
+                return;
+            }
+            String id = objectMapper.readTree(response.body()).get("id").asText();
+            startedAt.put(id, scheduled);
+            if (scheduled >= measureFrom) {
+                acceptLatencies.add(accepted - scheduled);
+            }
+            bytesSent.addAndGet(images.get(size).length);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A multipart upload of the size's template image with the sequence number written over its first pixels,
+     * so every request has distinct content and none is answered from the result cache.
+     */
+    private HttpRequest.BodyPublisher body(long sequence, int size) {
+        byte[] image = images.get(size);
+        int pixels = BmpFixtures.HEADER_SIZE;
+        int stamp = Math.min(Long.BYTES, image.length - pixels);
+        byte[] sequenceBytes = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(sequence).array();
+
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"key\"\r\n\r\n" + KEY + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"mode\"\r\n\r\n" + mode + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"load-" + sequence + ".bmp\"\r\n"
+                + "Content-Type: image/bmp\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        return HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofString(head, StandardCharsets.UTF_8),
+                HttpRequest.BodyPublishers.ofByteArray(image, 0, pixels),
+                HttpRequest.BodyPublishers.ofByteArray(sequenceBytes, 0, stamp),
+                HttpRequest.BodyPublishers.ofByteArray(image, pixels + stamp, image.length - pixels - stamp),
+                HttpRequest.BodyPublishers.ofString(tail, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Records when each job reaches DONE or FAILED, from the same fanout exchange that feeds the SSE streams.
+     */
+    private SimpleMessageListenerContainer listenForStatus(LocalPipeline pipeline) {
+        RabbitAdmin admin = new RabbitAdmin(pipeline.getConnectionFactory());
+        FanoutExchange exchange = new FanoutExchange(JobStatusConfig.EXCHANGE_NAME, true, false);
+        Queue queue = new AnonymousQueue();
+        admin.declareExchange(exchange);
+        admin.declareQueue(queue);
+        admin.declareBinding(BindingBuilder.bind(queue).to(exchange));
+
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(pipeline.getConnectionFactory());
+        container.setQueues(queue);
+        container.setMessageListener(message -> {
+            long now = System.nanoTime();
+            try {
+                JsonNode job = objectMapper.readTree(message.getBody());
+                String status = job.path("status").asText();
+                if (status.equals("DONE") || status.equals("FAILED")) {
+                    if (finishedAt.putIfAbsent(job.path("id").asText(), now) == null && status.equals("FAILED")) {
+                        failed.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+        });
+        container.start();
+        return container;
+    }
+
+    private void sample(LocalPipeline pipeline) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        maxHeapUsed = Math.max(maxHeapUsed, memory.getHeapMemoryUsage().getUsed());
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                maxDirectUsed = Math.max(maxDirectUsed, pool.getMemoryUsed());
+            }
+        }
+        try {
+            maxQueueDepth = Math.max(maxQueueDepth, pipeline.queueDepth());
+        } catch (RuntimeException e) {
+            // The broker is shutting down; keep the depth seen so far
+        }
+    }
+
+    /**
+     * Waits for every accepted job to finish, or for the drain timeout to pass.
+     */
+    private void drain(long sendEnd) throws InterruptedException {
+        long deadline = sendEnd + drainTimeout.toNanos();
+        while (System.nanoTime() < deadline && !finishedAt.keySet().containsAll(startedAt.keySet())) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void report(long sendNanos) throws IOException {
+        long[] latencies = startedAt.entrySet().stream()
+                .filter(entry -> entry.getValue() >= measureFrom && finishedAt.containsKey(entry.getKey()))
+                .mapToLong(entry -> finishedAt.get(entry.getKey()) - entry.getValue())
+                .sorted()
+                .toArray();
+        long[] accepts = acceptLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        long firstMeasured = measureFrom;
+        long lastFinished = startedAt.entrySet().stream()
+                .filter(entry -> entry.getValue() >= measureFrom)
+                .map(entry -> finishedAt.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(firstMeasured);
+        long unfinished = startedAt.keySet().stream().filter(id -> !finishedAt.containsKey(id)).count();
+        double seconds = Math.max(1, lastFinished - firstMeasured) / 1e9;
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("targetRate", rate);
+        result.put("durationSeconds", duration.toMillis() / 1000.0);
+        result.put("sizeMix", sizeMix.sizes().toString());
+        result.put("mode", mode);
+        result.put("sent", startedAt.size() + rejected.get() + errors.get());
+        result.put("completed", latencies.length);
+        result.put("failed", failed.get());
+        result.put("rejected", rejected.get());
+        result.put("errors", errors.get());
+        result.put("unfinished", unfinished);
+        result.put("throughputPerSecond", latencies.length / seconds);
+        result.put("uploadMBPerSecond", bytesSent.get() / (1024.0 * 1024.0) / (sendNanos / 1e9));
+        ObjectNode endToEnd = result.putObject("latencyMillis");
+        percentiles(endToEnd, latencies);
+        ObjectNode upload = result.putObject("acceptLatencyMillis");
+        percentiles(upload, accepts);
+        result.put("maxQueueDepth", maxQueueDepth);
+        result.put("maxHeapUsedMB", maxHeapUsed / (1024 * 1024));
+        result.put("maxDirectMemoryUsedMB", maxDirectUsed / (1024 * 1024));
+        result.put("maxHeapMB", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        result.putPOJO("properties", pipelineProperties);
+
+        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result);
+        System.out.println(json);
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        Files.writeString(resultFile, json);
+    }
+
+    private static void percentiles(ObjectNode node, long[] sortedNanos) {
+        for (double percentile : new double[] { 50, 95, 99, 100 }) {
+            String name = percentile == 100 ? "max" : "p" + (int) percentile;
+            if (sortedNanos.length == 0) {
+                node.putNull(name);
+                continue;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+            node.put(name, sortedNanos[Math.max(0, index)] / 1e6);
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
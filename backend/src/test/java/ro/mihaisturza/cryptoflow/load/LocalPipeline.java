@@ -0,0 +1,144 @@
+package ro.mihaisturza.cryptoflow.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.amqp.CachingConnectionFactoryConfigurer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import com.github.fridujo.rabbitmq.mock.MockConnectionFactory;
+
+import ro.mihaisturza.cryptoflow.CryptoflowApplication;
+import ro.mihaisturza.cryptoflow.amqp.RabbitMQConfig;
+
+/**
+ * The whole pipeline in this JVM: a backend and a consumer application context sharing an in-process
+ * RabbitMQ stand-in (queue arguments, priorities, TTLs and dead-lettering behave as on the broker), an
+ * H2 database in MySQL mode, and staging and storage directories under a temp directory. The consumer's
+ * native engine runs a stub processor that copies its input, unless the properties select another engine.
+ */
+class LocalPipeline implements AutoCloseable {
+    private final Path workDirectory;
+    private final MockConnectionFactory broker = new MockConnectionFactory();
+    private final CachingConnectionFactory connectionFactory = new CachingConnectionFactory(broker);
+    private final RabbitAdmin rabbitAdmin = new RabbitAdmin(connectionFactory);
+    private ConfigurableApplicationContext consumer;
+    private ConfigurableApplicationContext backend;
+
+    LocalPipeline(Map<String, String> properties) throws IOException {
+        workDirectory = Files.createTempDirectory("cryptoflow-load");
+        Path stubProcessor = workDirectory.resolve("crypto_processor");
+        // crypto_processor <operation> <mode> <key> <input> <output>
+        Files.writeString(stubProcessor, "#!/bin/sh\nexec cp \"$4\" \"$5\"\n");
+        Files.setPosixFilePermissions(stubProcessor, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("cryptoflow.staging.path", workDirectory.resolve("staging").toString());
+        defaults.put("cryptoflow.storage.path", workDirectory.resolve("images").toString());
+        defaults.put("cryptoflow.crypto.native.processor-path", stubProcessor.toString());
+        defaults.put("cryptoflow.crypto.native.shm-path", workDirectory.resolve("shm").toString());
+        defaults.putAll(properties);
+
+        try {
+            // The consumer creates the schema first, so the two contexts don't race on ddl-auto
+            consumer = start("consumer", WebApplicationType.NONE, defaults);
+            defaults.put("server.port", "0");
+            backend = start("backend", WebApplicationType.SERVLET, defaults);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    URI baseUri() {
+        int port = ((WebServerApplicationContext) backend).getWebServer().getPort();
+        return URI.create("http://localhost:" + port);
+    }
+
+    ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * Messages waiting in the small and large processing queues.
+     */
+    long queueDepth() {
+        return messageCount(RabbitMQConfig.SMALL_QUEUE_NAME) + messageCount(RabbitMQConfig.LARGE_QUEUE_NAME);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (backend != null) {
+            backend.close();
+        }
+        if (consumer != null) {
+            consumer.close();
+        }
+        connectionFactory.destroy();
+        try (Stream<Path> files = Files.walk(workDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private long messageCount(String queue) {
+        QueueInformation information = rabbitAdmin.getQueueInfo(queue);
+        return information != null ? information.getMessageCount() : 0;
+    }
+
+    private ConfigurableApplicationContext start(String role, WebApplicationType webApplicationType,
+            Map<String, String> properties) {
+        // As command line arguments, so they override the profiles' configuration
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(CryptoflowApplication.class)
+                .profiles(role, "load")
+                .web(webApplicationType)
+                .initializers(context -> {
+                    // Benchmarks under src/test declare controllers of their own
+                    context.getBeanFactory().registerSingleton("testClassExcludeFilter", new TestClassExcludeFilter());
+                    useBroker((GenericApplicationContext) context);
+                })
+                .run(args);
+    }
+
+    /**
+     * Replaces the auto-configured connection factory with one on the stand-in broker, still configured from
+     * the spring.rabbitmq properties (publisher confirms, channel cache) of the context's profile.
+     */
+    private void useBroker(GenericApplicationContext context) {
+        context.registerBean("rabbitConnectionFactory", CachingConnectionFactory.class, () -> {
+            CachingConnectionFactory factory = new CachingConnectionFactory(broker);
+            context.getBean(CachingConnectionFactoryConfigurer.class).configure(factory);
+            return factory;
+        });
+    }
+
+    private static class TestClassExcludeFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            String className = metadataReader.getClassMetadata().getClassName();
+            return className.contains("Benchmark") || className.endsWith("Tests");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ro.mihaisturza.cryptoflow.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Weighted image sizes, written as size:weight pairs, e.g. {@code 16KB:70,1MB:25,32MB:5}.
+ */
+class SizeMix {
+    private final List<Entry> entries = new ArrayList<>();
+    private final int totalWeight;
+
+    SizeMix(String spec) {
+        int total = 0;
+        for (String part : spec.split(",")) {
+            String[] sizeAndWeight = part.trim().split(":");
+            if (sizeAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected size:weight, got: " + part);
+            }
+            long size = DataSize.parse(sizeAndWeight[0].trim()).toBytes();
+            int weight = Integer.parseInt(sizeAndWeight[1].trim());
+            if (size <= 0 || size > Integer.MAX_VALUE || weight <= 0) {
+                throw new IllegalArgumentException("Invalid size mix entry: " + part);
+            }
+            total += weight;
+            entries.add(new Entry((int) size, total));
+        }
+        this.totalWeight = total;
+    }
+
+    List<Integer> sizes() {
+        return entries.stream().map(Entry::size).toList();
+    }
+
+    int pick(Random random) {
+        int point = random.nextInt(totalWeight);
+        for (Entry entry : entries) {
+            if (point < entry.cumulativeWeight()) {
+                return entry.size();
+            }
+        }
+        throw new IllegalStateException("Weights do not add up");
+    }
+
+    private record Entry(int size, int cumulativeWeight) {
+    }
+}
@@ -0,0 +1,59 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class PayloadHashTests {
+    private final byte[] payload = new byte[10_000];
+
+    PayloadHashTests() {
+        Arrays.fill(payload, (byte) 7);
+    }
+
+    @Test
+    void passesAPayloadThatMatchesItsHash() throws IOException {
+        try (InputStream content = PayloadHash.verifying(new ByteArrayInputStream(payload), hash(payload), "ref")) {
+            assertArrayEquals(payload, content.readAllBytes());
+        }
+    }
+
+    @Test
+    void failsTheLastReadOfATruncatedPayload() {
+        byte[] truncated = Arrays.copyOf(payload, payload.length - 1);
+
+        assertThrows(StagedPayloadException.class, () -> PayloadHash
+                .verifying(new ByteArrayInputStream(truncated), hash(payload), "ref").readAllBytes());
+    }
+
+    @Test
+    void failsAReplacedPayload() {
+        byte[] replaced = payload.clone();
+        replaced[42] ^= 1;
+        MessageDigest digest = PayloadHash.newDigest();
+        digest.update(replaced);
+
+        assertThrows(StagedPayloadException.class, () -> PayloadHash.verify(digest, hash(payload), "ref"));
+    }
+
+    @Test
+    void skipsPayloadsPublishedWithoutAHash() throws IOException {
+        PayloadHash.verify(PayloadHash.newDigest(), null, "ref");
+        try (InputStream content = PayloadHash.verifying(new ByteArrayInputStream(payload), null, "ref")) {
+            assertArrayEquals(payload, content.readAllBytes());
+        }
+    }
+
+    private static String hash(byte[] content) {
+        MessageDigest digest = PayloadHash.newDigest();
+        digest.update(content);
+        return PayloadHash.toHex(digest);
+    }
+}
@@ -0,0 +1,128 @@
+package ro.mihaisturza.cryptoflow.staging;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ro.mihaisturza.cryptoflow.job.JobStatusService;
+import ro.mihaisturza.cryptoflow.tiling.TileJobStore;
+
+/**
+ * Sweeps a staging directory on disk with a 24 hour retention.
+ */
+class StagingSweeperTests {
+    private static final Duration RETENTION = Duration.ofHours(24);
+
+    @TempDir
+    private Path stagingDirectory;
+
+    private final TileJobStore tileJobStore = mock(TileJobStore.class);
+    private final JobStatusService jobStatusService = mock(JobStatusService.class);
+    private FileSystemStagingStore stagingStore;
+    private StagingSweeper sweeper;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stagingStore = new FileSystemStagingStore(stagingDirectory.toString());
+        sweeper = new StagingSweeper();
+        ReflectionTestUtils.setField(sweeper, "stagingStore", stagingStore);
+        ReflectionTestUtils.setField(sweeper, "tileJobStore", tileJobStore);
+        ReflectionTestUtils.setField(sweeper, "jobStatusService", jobStatusService);
+        ReflectionTestUtils.setField(sweeper, "retention", RETENTION);
+    }
+
+    @Test
+    void deletesPayloadsPastTheRetentionAndFailsTheirJobs() throws IOException {
+        UUID expired = stage(RETENTION.plusHours(1));
+        UUID fresh = stage(RETENTION.minusHours(1));
+
+        sweeper.sweep();
+
+        assertFalse(Files.exists(stagingDirectory.resolve(expired.toString())));
+        assertTrue(Files.exists(stagingDirectory.resolve(fresh.toString())));
+        verify(jobStatusService).failed(eq(expired), anyString());
+        verify(jobStatusService, never()).failed(eq(fresh), anyString());
+    }
+
+    @Test
+    void deletesAbandonedPartialUploadsWithoutFailingAJob() throws IOException {
+        Path partial = write(UUID.randomUUID() + ".part", RETENTION.plusHours(1));
+
+        sweeper.sweep();
+
+        assertFalse(Files.exists(partial));
+        verify(jobStatusService, never()).failed(any(UUID.class), anyString());
+    }
+
+    @Test
+    void leavesFilesThatAreNotPayloadsAlone() throws IOException {
+        Path foreign = write("lost+found.txt", RETENTION.plusDays(30));
+
+        sweeper.sweep();
+
+        assertTrue(Files.exists(foreign));
+    }
+
+    @Test
+    void dropsTileJobsCreatedBeforeTheRetention() {
+        sweeper.sweep();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(tileJobStore).deleteJobsCreatedBefore(cutoff.capture());
+        LocalDateTime expected = LocalDateTime.now().minus(RETENTION);
+        assertTrue(Duration.between(cutoff.getValue(), expected).abs().compareTo(Duration.ofMinutes(1)) < 0);
+    }
+
+    @Test
+    void keepsSweepingAfterAFailedRun() throws IOException {
+        UUID expired = stage(RETENTION.plusHours(1));
+        when(tileJobStore.deleteJobsCreatedBefore(any())).thenThrow(new IllegalStateException("Database down"))
+                .thenReturn(0);
+
+        sweeper.sweep();
+        sweeper.sweep();
+
+        verify(jobStatusService, times(1)).failed(eq(expired), anyString());
+        verify(tileJobStore, times(2)).deleteJobsCreatedBefore(any());
+    }
+
+    private UUID stage(Duration age) throws IOException {
+        UUID id = UUID.randomUUID();
+        stagingStore.stage(id, new ByteArrayInputStream(new byte[64]));
+        age(stagingDirectory.resolve(id.toString()), age);
+        return id;
+    }
+
+    private Path write(String name, Duration age) throws IOException {
+        Path file = Files.write(stagingDirectory.resolve(name), new byte[64]);
+        age(file, age);
+        return file;
+    }
+
+    private static void age(Path file, Duration age) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+    }
+}
@@ -0,0 +1,136 @@
+package ro.mihaisturza.cryptoflow.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class JdbcChunkImageStorageTests {
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final byte[] image = new byte[4500]; // four whole chunks and half of a fifth
+    private JdbcTemplate jdbcSpy;
+    private JdbcChunkImageStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        new Random(7).nextBytes(image);
+        jdbcSpy = spy(jdbcTemplate);
+        storage = new JdbcChunkImageStorage(CHUNK_SIZE);
+        ReflectionTestUtils.setField(storage, "jdbcTemplate", jdbcSpy);
+    }
+
+    @Test
+    void readsBackWhatEitherStoreWrote() throws IOException {
+        StoredImage streamed = storage.store(new ByteArrayInputStream(image));
+        StoredImage buffered = storage.store(ByteBuffer.wrap(image));
+
+        assertEquals(image.length, streamed.getSize());
+        assertEquals(image.length, buffered.getSize());
+        assertEquals(5, chunks(streamed.getKey()));
+        try (InputStream content = storage.open(streamed.getKey())) {
+            assertArrayEquals(image, content.readAllBytes());
+        }
+        try (InputStream content = storage.open(buffered.getKey())) {
+            assertArrayEquals(image, content.readAllBytes());
+        }
+    }
+
+    @Test
+    void seeksToTheChunkHoldingTheSkippedToPosition() throws IOException {
+        StoredImage stored = storage.store(ByteBuffer.wrap(image));
+        clearInvocations(jdbcSpy);
+
+        try (InputStream content = storage.open(stored.getKey())) {
+            assertEquals(2950, content.skip(2950));
+            // Crosses from the third chunk into the fourth
+            assertArrayEquals(Arrays.copyOfRange(image, 2950, 3050), content.readNBytes(100));
+        }
+
+        // One query per chunk read; the chunks skipped over are never fetched
+        verify(jdbcSpy, times(2)).query(anyString(), any(RowMapper.class), eq(stored.getKey()), any(Long.class));
+    }
+
+    @Test
+    void endsAStreamSkippedPastTheImage() throws IOException {
+        StoredImage stored = storage.store(ByteBuffer.wrap(image));
+
+        try (InputStream content = storage.open(stored.getKey())) {
+            content.skip(4499);
+            assertEquals(image[4499] & 0xFF, content.read());
+            assertEquals(-1, content.read());
+            content.skip(10_000);
+            assertEquals(-1, content.read(new byte[16], 0, 16));
+        }
+    }
+
+    @Test
+    void deletesTheChunksOfAStreamThatFails() {
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(image, 0, 2500), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Payload does not match its hash");
+            }
+        });
+
+        assertThrows(IOException.class, () -> storage.store(failing));
+        assertEquals(0, allChunks());
+    }
+
+    @Test
+    void deletesTheChunksOfAStoreWhoseInsertFails() {
+        AtomicInteger inserts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (inserts.incrementAndGet() == 3) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            return invocation.callRealMethod();
+        }).when(jdbcSpy).update(anyString(), any(PreparedStatementSetter.class));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> storage.store(ByteBuffer.wrap(image)));
+        assertEquals(0, allChunks());
+    }
+
+    private int chunks(String key) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM processed_image_chunks WHERE storage_key = ?",
+                Integer.class, key);
+    }
+
+    private int allChunks() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM processed_image_chunks", Integer.class);
+    }
+}
@@ -0,0 +1,121 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import ro.mihaisturza.cryptoflow.tiling.TileJobStore.Progress;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(TileJobStore.class)
+class TileJobStoreTests {
+    private final UUID jobId = UUID.randomUUID();
+
+    @Autowired
+    private TileJobStore tileJobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void keepsTheFirstResultOfARedeliveredTile() {
+        tileJobStore.createJob(jobId, "payload", 54, 3);
+
+        assertEquals(Progress.PENDING, tileJobStore.recordTile(jobId, 1, "tile-1", 16));
+        assertEquals(Progress.DUPLICATE, tileJobStore.recordTile(jobId, 1, "tile-1-again", 16));
+        assertEquals(Progress.PENDING, tileJobStore.recordTile(jobId, 0, "tile-0", 16));
+
+        assertEquals(List.of("tile-0", "tile-1"), references());
+    }
+
+    @Test
+    void letsTheLastTileClaimTheReduce() {
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+
+        assertEquals(Progress.PENDING, tileJobStore.recordTile(jobId, 0, "tile-0", 16));
+        assertEquals(Progress.COMPLETE, tileJobStore.recordTile(jobId, 1, "tile-1", 16));
+
+        assertEquals(1, claimedBy());
+        assertEquals(List.of("tile-0", "tile-1"), references());
+    }
+
+    @Test
+    void keepsTheClaimFromOtherRedeliveredTiles() {
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+        tileJobStore.recordTile(jobId, 0, "tile-0", 16);
+        tileJobStore.recordTile(jobId, 1, "tile-1", 16);
+
+        assertEquals(Progress.REDUCING, tileJobStore.recordTile(jobId, 0, "tile-0-again", 16));
+        assertEquals(1, claimedBy());
+    }
+
+    @Test
+    void handsTheClaimBackToTheClaimingTileWhenItIsRedelivered() {
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+        tileJobStore.recordTile(jobId, 0, "tile-0", 16);
+        tileJobStore.recordTile(jobId, 1, "tile-1", 16);
+
+        // The reduce was interrupted and the claiming tile's message came back
+        assertEquals(Progress.COMPLETE, tileJobStore.recordTile(jobId, 1, "tile-1-again", 16));
+        assertEquals(List.of("tile-0", "tile-1"), references());
+    }
+
+    @Test
+    void letsAnyTileTakeOverAStaleClaim() {
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+        tileJobStore.recordTile(jobId, 0, "tile-0", 16);
+        tileJobStore.recordTile(jobId, 1, "tile-1", 16);
+        jdbcTemplate.update("UPDATE image_tile_jobs SET reduce_claimed_at = ? WHERE job_id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)), jobId.toString());
+
+        assertEquals(Progress.COMPLETE, tileJobStore.recordTile(jobId, 0, "tile-0-again", 16));
+        assertEquals(0, claimedBy());
+        assertEquals(Progress.REDUCING, tileJobStore.recordTile(jobId, 1, "tile-1-again", 16));
+    }
+
+    @Test
+    void reportsTilesOfJobsThatAreGone() {
+        assertEquals(Progress.UNKNOWN_JOB, tileJobStore.recordTile(jobId, 0, "tile-0", 16));
+
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+        tileJobStore.recordTile(jobId, 0, "tile-0", 16);
+        tileJobStore.deleteJob(jobId);
+
+        assertEquals(Progress.UNKNOWN_JOB, tileJobStore.recordTile(jobId, 1, "tile-1", 16));
+        assertTrue(tileJobStore.findResults(jobId).isEmpty());
+    }
+
+    @Test
+    void dropsJobsCreatedBeforeTheCutoff() {
+        tileJobStore.createJob(jobId, "payload", 54, 2);
+        tileJobStore.recordTile(jobId, 0, "tile-0", 16);
+
+        assertEquals(0, tileJobStore.deleteJobsCreatedBefore(LocalDateTime.now().minusMinutes(1)));
+        assertEquals(1, tileJobStore.deleteJobsCreatedBefore(LocalDateTime.now().plusMinutes(1)));
+        assertTrue(tileJobStore.findJob(jobId).isEmpty());
+        assertTrue(tileJobStore.findResults(jobId).isEmpty());
+    }
+
+    private List<String> references() {
+        return tileJobStore.findResults(jobId).stream().map(TileResult::getResultReference).toList();
+    }
+
+    private int claimedBy() {
+        return jdbcTemplate.queryForObject("SELECT reduce_claimed_by FROM image_tile_jobs WHERE job_id = ?",
+                Integer.class, jobId.toString());
+    }
+}
@@ -0,0 +1,93 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.ImageTile;
+import ro.mihaisturza.cryptoflow.image.Operation;
+
+class TilePlannerTests {
+    private static final int TILE_SIZE = 4096;
+
+    private final TileJobStore tileJobStore = mock(TileJobStore.class);
+    private final MessagePublisherService messagePublisherService = mock(MessagePublisherService.class);
+    private final TilePlanner tilePlanner = planner(true, 0);
+
+    // 300-byte rows: an 11100-byte pixel region that is not block aligned
+    private final byte[] image = BmpFixtures.generate(100, 37, 7L);
+
+    @Test
+    void splitsThePixelRegionIntoBlockAlignedTiles() {
+        ImageProcessingMessage message = message(Operation.ENCRYPT, EncryptionMode.AES_ECB, "payload");
+
+        assertTrue(tilePlanner.publishTiles(message, 3));
+
+        ArgumentCaptor<ImageProcessingMessage> published = ArgumentCaptor.forClass(ImageProcessingMessage.class);
+        verify(messagePublisherService, times(3)).publishMessage(published.capture(), eq(3));
+        verify(tileJobStore).createJob(message.getId(), "payload", BmpFixtures.HEADER_SIZE, 3);
+
+        List<ImageProcessingMessage> tiles = published.getAllValues();
+        long offset = BmpFixtures.HEADER_SIZE;
+        for (int index = 0; index < tiles.size(); index++) {
+            ImageProcessingMessage tileMessage = tiles.get(index);
+            ImageTile tile = tileMessage.getTile();
+            assertEquals(message.getId(), tileMessage.getId());
+            assertEquals("payload", tileMessage.getPayloadReference());
+            assertEquals(message.getPayloadHash(), tileMessage.getPayloadHash());
+            assertNull(tileMessage.getImageData());
+            assertEquals(index, tile.getIndex());
+            assertEquals(3, tile.getCount());
+            assertEquals(offset, tile.getOffset());
+            assertEquals(tile.getLength(), tileMessage.getPayloadSize());
+            assertEquals(tile.isLast() ? 11100 - 2 * TILE_SIZE : TILE_SIZE, tile.getLength());
+            offset += tile.getLength();
+        }
+        assertEquals(image.length, offset);
+    }
+
+    @Test
+    void leavesImagesThatCannotBeTiledWhole() {
+        assertFalse(tilePlanner.publishTiles(message(Operation.ENCRYPT, EncryptionMode.AES_CBC, "payload"), 0));
+        assertFalse(tilePlanner.publishTiles(message(Operation.ENCRYPT, EncryptionMode.AES_ECB, null), 0));
+        // Not a whole number of blocks, so not a valid ciphertext
+        assertFalse(tilePlanner.publishTiles(message(Operation.DECRYPT, EncryptionMode.AES_ECB, "payload"), 0));
+        assertFalse(planner(true, image.length + 1)
+                .publishTiles(message(Operation.ENCRYPT, EncryptionMode.AES_ECB, "payload"), 0));
+        assertFalse(planner(false, 0).publishTiles(message(Operation.ENCRYPT, EncryptionMode.AES_ECB, "payload"), 0));
+
+        verifyNoInteractions(tileJobStore, messagePublisherService);
+    }
+
+    private TilePlanner planner(boolean enabled, long threshold) {
+        TilePlanner planner = new TilePlanner(enabled, threshold, TILE_SIZE);
+        ReflectionTestUtils.setField(planner, "tileJobStore", tileJobStore);
+        ReflectionTestUtils.setField(planner, "messagePublisherService", messagePublisherService);
+        return planner;
+    }
+
+    private ImageProcessingMessage message(Operation operation, EncryptionMode mode, String payloadReference) {
+        return new ImageProcessingMessage(UUID.randomUUID(), payloadReference == null ? ByteBuffer.wrap(image) : null,
+                payloadReference, payloadReference == null ? null : "hash", image.length, "mySecretKey123456",
+                operation, mode, "test.bmp", 0, null, BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+    }
+}
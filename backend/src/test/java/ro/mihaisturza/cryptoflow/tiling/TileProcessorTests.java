@@ -0,0 +1,176 @@
+package ro.mihaisturza.cryptoflow.tiling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import ro.mihaisturza.cryptoflow.amqp.MessagePublisherService;
+import ro.mihaisturza.cryptoflow.cache.KeyFingerprint;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImage;
+import ro.mihaisturza.cryptoflow.consumer.ProcessedImageRepository;
+import ro.mihaisturza.cryptoflow.crypto.JavaCryptoEngine;
+import ro.mihaisturza.cryptoflow.image.BmpFixtures;
+import ro.mihaisturza.cryptoflow.image.BmpHeader;
+import ro.mihaisturza.cryptoflow.image.EncryptionMode;
+import ro.mihaisturza.cryptoflow.image.ImageProcessingMessage;
+import ro.mihaisturza.cryptoflow.image.Operation;
+import ro.mihaisturza.cryptoflow.staging.FileSystemStagingStore;
+import ro.mihaisturza.cryptoflow.staging.PayloadHash;
+import ro.mihaisturza.cryptoflow.staging.StagedPayloadException;
+import ro.mihaisturza.cryptoflow.storage.FileSystemImageStorage;
+
+/**
+ * Splits a staged image with {@link TilePlanner} and runs its tiles through {@link TileProcessor}, against the
+ * tile tables in H2 and staging and storage directories on disk.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(TileJobStore.class)
+class TileProcessorTests {
+    private static final String KEY = "mySecretKey123456";
+
+    @TempDir
+    private Path stagingDirectory;
+
+    @TempDir
+    private Path storageDirectory;
+
+    @Autowired
+    private TileJobStore tileJobStore;
+
+    @Autowired
+    private ProcessedImageRepository processedImageRepository;
+
+    private final JavaCryptoEngine javaCryptoEngine = new JavaCryptoEngine(2, 4096, new KeyFingerprint("test-salt"),
+            256, Duration.ofMinutes(10));
+    private final MessagePublisherService messagePublisherService = mock(MessagePublisherService.class);
+    // 300-byte rows: an 11100-byte pixel region that is not block aligned, cut into three tiles
+    private final byte[] image = BmpFixtures.generate(100, 37, 7L);
+
+    private FileSystemStagingStore stagingStore;
+    private FileSystemImageStorage imageStorage;
+    private TileProcessor tileProcessor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stagingStore = new FileSystemStagingStore(stagingDirectory.toString());
+        imageStorage = new FileSystemImageStorage(storageDirectory.toString());
+
+        tileProcessor = new TileProcessor();
+        ReflectionTestUtils.setField(tileProcessor, "javaCryptoEngine", javaCryptoEngine);
+        ReflectionTestUtils.setField(tileProcessor, "stagingStore", stagingStore);
+        ReflectionTestUtils.setField(tileProcessor, "tileJobStore", tileJobStore);
+        ReflectionTestUtils.setField(tileProcessor, "imageStorage", imageStorage);
+        ReflectionTestUtils.setField(tileProcessor, "processedImageRepository", processedImageRepository);
+    }
+
+    @Test
+    void assemblesTilesFinishedInAnyOrderIntoTheWholeImageResult() throws IOException {
+        ImageProcessingMessage message = stage();
+        List<ImageProcessingMessage> tiles = split(message);
+
+        assertFalse(tileProcessor.process(tiles.get(2)));
+        assertFalse(tileProcessor.process(tiles.get(0)));
+        assertTrue(tileProcessor.process(tiles.get(1)));
+
+        ProcessedImage processedImage = processedImageRepository.findById(message.getId().toString()).orElseThrow();
+        byte[] expected = bytes(javaCryptoEngine.process(ByteBuffer.wrap(image), KEY, Operation.ENCRYPT,
+                EncryptionMode.AES_ECB, "test.bmp"));
+        try (InputStream stored = imageStorage.open(processedImage.getStorageKey())) {
+            assertArrayEquals(expected, stored.readAllBytes());
+        }
+        assertEquals(expected.length, processedImage.getImageSize());
+        assertEquals(0, stagedFiles(), "the staged image and tile results are deleted");
+        assertTrue(tileJobStore.findJob(message.getId()).isEmpty());
+    }
+
+    @Test
+    void dropsTheResultOfARedeliveredTile() throws IOException {
+        List<ImageProcessingMessage> tiles = split(stage());
+
+        assertFalse(tileProcessor.process(tiles.get(0)));
+        assertFalse(tileProcessor.process(tiles.get(0)));
+
+        assertEquals(1, tileJobStore.findResults(tiles.get(0).getId()).size());
+        assertEquals(2, stagedFiles(), "the staged image and the first result of the tile");
+    }
+
+    @Test
+    void failsTheReduceOfACorruptedStagedImage() throws IOException {
+        ImageProcessingMessage message = stage();
+        List<ImageProcessingMessage> tiles = split(message);
+        Path staged = stagingDirectory.resolve(message.getPayloadReference());
+        byte[] corrupted = Files.readAllBytes(staged);
+        corrupted[corrupted.length - 1] ^= 1;
+        Files.write(staged, corrupted);
+
+        assertFalse(tileProcessor.process(tiles.get(0)));
+        assertFalse(tileProcessor.process(tiles.get(1)));
+        assertThrows(StagedPayloadException.class, () -> tileProcessor.process(tiles.get(2)));
+
+        assertTrue(processedImageRepository.findById(message.getId().toString()).isEmpty());
+    }
+
+    private ImageProcessingMessage stage() throws IOException {
+        UUID id = UUID.randomUUID();
+        String reference = stagingStore.stage(id, new ByteArrayInputStream(image));
+        MessageDigest digest = PayloadHash.newDigest();
+        digest.update(image);
+        return new ImageProcessingMessage(id, null, reference, PayloadHash.toHex(digest), image.length, KEY,
+                Operation.ENCRYPT, EncryptionMode.AES_ECB, "test.bmp", 0, null,
+                BmpHeader.parse(ByteBuffer.wrap(image), image.length));
+    }
+
+    private List<ImageProcessingMessage> split(ImageProcessingMessage message) {
+        TilePlanner tilePlanner = new TilePlanner(true, 0, 4096);
+        ReflectionTestUtils.setField(tilePlanner, "tileJobStore", tileJobStore);
+        ReflectionTestUtils.setField(tilePlanner, "messagePublisherService", messagePublisherService);
+        assertTrue(tilePlanner.publishTiles(message, 0));
+
+        ArgumentCaptor<ImageProcessingMessage> published = ArgumentCaptor.forClass(ImageProcessingMessage.class);
+        verify(messagePublisherService, times(3)).publishMessage(published.capture(), anyInt());
+        return published.getAllValues();
+    }
+
+    private long stagedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(stagingDirectory)) {
+            return files.count();
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
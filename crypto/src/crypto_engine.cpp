@@ -2,7 +2,10 @@
 #include <openssl/evp.h>
 #include <openssl/aes.h>
 #include <openssl/rand.h>
+#include <openssl/hmac.h>
+#include <openssl/crypto.h>
 #include <omp.h>
+#include <stdexcept>
 #include <iostream>
 #include <cstring>
 
@@ -124,6 +127,182 @@ std::vector<unsigned char> CryptoEngine::processData(
     return processedData;
 }
 
+void CryptoEngine::processInPlace(
+    unsigned char* data,
+    size_t length,
+    const std::string& key,
+    CryptoMode mode,
+    Operation operation,
+    const unsigned char* iv,
+    KeyScheduleCache* cache
+) {
+    const int enc = (operation == Operation::ENCRYPT) ? 1 : 0;
+    const size_t numBlocks = length / AES_BLOCK_SIZE;
+    bool failed = false;
+
+    if (cache != nullptr) {
+        const std::vector<EVP_CIPHER_CTX*>& contexts = cache->contexts(key, mode, operation);
+        #pragma omp parallel num_threads(static_cast<int>(contexts.size()))
+        cipherBlocks(contexts[omp_get_thread_num()], data, numBlocks, mode, iv, enc, failed);
+    } else {
+        std::vector<unsigned char> keyBytes(32, 0);
+        size_t keyLen = std::min(key.length(), static_cast<size_t>(32));
+        std::memcpy(keyBytes.data(), key.c_str(), keyLen);
+
+        const EVP_CIPHER* cipher = (mode == CryptoMode::AES_ECB) ?
+            EVP_aes_256_ecb() : EVP_aes_256_cbc();
+
+        // One context per thread instead of one per block
+        #pragma omp parallel
+        {
+            EVP_CIPHER_CTX* ctx = EVP_CIPHER_CTX_new();
+            EVP_CipherInit_ex(ctx, cipher, nullptr, keyBytes.data(),
+                mode == CryptoMode::AES_CBC ? iv : nullptr, enc);
+            EVP_CIPHER_CTX_set_padding(ctx, 0);
+            cipherBlocks(ctx, data, numBlocks, mode, iv, enc, failed);
+            EVP_CIPHER_CTX_free(ctx);
+        }
+    }
+
+    if (failed) {
+        throw std::runtime_error("Cipher update failed");
+    }
+}
+
+// The calling thread's share of the blocks; must be called by every thread of the enclosing parallel region
+void CryptoEngine::cipherBlocks(
+    EVP_CIPHER_CTX* ctx,
+    unsigned char* data,
+    size_t numBlocks,
+    CryptoMode mode,
+    const unsigned char* iv,
+    int enc,
+    bool& failed
+) {
+    #pragma omp for
+    for (size_t i = 0; i < numBlocks; i++) {
+        if (mode == CryptoMode::AES_CBC) {
+            // processData chains every block from the same IV; reset it to match
+            EVP_CipherInit_ex(ctx, nullptr, nullptr, nullptr, iv, enc);
+        }
+
+        int outLen;
+        unsigned char* block = data + i * AES_BLOCK_SIZE;
+        if (EVP_CipherUpdate(ctx, block, &outLen, block, AES_BLOCK_SIZE) != 1) {
+            #pragma omp atomic write
+            failed = true;
+        }
+    }
+}
+
+KeyScheduleCache::KeyScheduleCache(size_t maxEntries, std::chrono::seconds ttl)
+    : maxEntries(maxEntries), ttl(ttl) {
+    if (RAND_bytes(salt, sizeof(salt)) != 1) {
+        throw std::runtime_error("Failed to generate key fingerprint salt");
+    }
+}
+
+KeyScheduleCache::~KeyScheduleCache() {
+    for (auto& entry : entries) {
+        release(entry.second);
+    }
+    OPENSSL_cleanse(salt, sizeof(salt));
+}
+
+const std::vector<EVP_CIPHER_CTX*>& KeyScheduleCache::contexts(
+    const std::string& key,
+    CryptoMode mode,
+    Operation operation
+) {
+    const auto now = std::chrono::steady_clock::now();
+    const std::string id = fingerprint(key, mode, operation);
+    auto found = entries.find(id);
+    if (found != entries.end()) {
+        found->second.lastUsed = now;
+        return found->second.contexts;
+    }
+
+    while (!entries.empty() && entries.size() >= maxEntries) {
+        auto oldest = entries.begin();
+        for (auto it = entries.begin(); it != entries.end(); ++it) {
+            if (it->second.lastUsed < oldest->second.lastUsed) {
+                oldest = it;
+            }
+        }
+        release(oldest->second);
+        entries.erase(oldest);
+    }
+
+    unsigned char keyBytes[32] = {0};
+    std::memcpy(keyBytes, key.data(), std::min(key.length(), sizeof(keyBytes)));
+    const EVP_CIPHER* cipher = (mode == CryptoMode::AES_ECB) ? EVP_aes_256_ecb() : EVP_aes_256_cbc();
+    const int enc = (operation == Operation::ENCRYPT) ? 1 : 0;
+
+    Entry entry;
+    entry.lastUsed = now;
+    bool initialised = true;
+    for (int i = 0; i < omp_get_max_threads(); i++) {
+        EVP_CIPHER_CTX* ctx = EVP_CIPHER_CTX_new();
+        if (ctx == nullptr) {
+            initialised = false;
+            break;
+        }
+        entry.contexts.push_back(ctx);
+        // CBC contexts get their IV per block from processInPlace
+        if (EVP_CipherInit_ex(ctx, cipher, nullptr, keyBytes, nullptr, enc) != 1
+                || EVP_CIPHER_CTX_set_padding(ctx, 0) != 1) {
+            initialised = false;
+            break;
+        }
+    }
+    OPENSSL_cleanse(keyBytes, sizeof(keyBytes));
+    if (!initialised) {
+        release(entry);
+        throw std::runtime_error("Failed to initialise cipher context");
+    }
+
+    return entries.emplace(id, std::move(entry)).first->second.contexts;
+}
+
+size_t KeyScheduleCache::expire() {
+    const auto cutoff = std::chrono::steady_clock::now() - ttl;
+    size_t expired = 0;
+    for (auto it = entries.begin(); it != entries.end();) {
+        if (it->second.lastUsed < cutoff) {
+            release(it->second);
+            it = entries.erase(it);
+            expired++;
+        } else {
+            ++it;
+        }
+    }
+    return expired;
+}
+
+std::string KeyScheduleCache::fingerprint(const std::string& key, CryptoMode mode, Operation operation) const {
+    std::string message = key;
+    message.push_back(mode == CryptoMode::AES_ECB ? 0 : 1);
+    message.push_back(operation == Operation::ENCRYPT ? 0 : 1);
+
+    unsigned char digest[EVP_MAX_MD_SIZE];
+    unsigned int digestLength = 0;
+    const bool hashed = HMAC(EVP_sha256(), salt, sizeof(salt),
+        reinterpret_cast<const unsigned char*>(message.data()), message.size(), digest, &digestLength) != nullptr;
+    OPENSSL_cleanse(&message[0], message.size());
+    if (!hashed) {
+        throw std::runtime_error("Failed to fingerprint key");
+    }
+    return std::string(reinterpret_cast<const char*>(digest), digestLength);
+}
+
+void KeyScheduleCache::release(Entry& entry) {
+    // EVP_CIPHER_CTX_free cleanses the expanded key before freeing it
+    for (EVP_CIPHER_CTX* ctx : entry.contexts) {
+        EVP_CIPHER_CTX_free(ctx);
+    }
+    entry.contexts.clear();
+}
+
 std::vector<unsigned char> CryptoEngine::padData(const std::vector<unsigned char>& data) {
     size_t blockSize = AES_BLOCK_SIZE;
     size_t paddingNeeded = blockSize - (data.size() % blockSize);
@@ -155,6 +334,22 @@ std::vector<unsigned char> CryptoEngine::removePadding(const std::vector<unsigne
     return std::vector<unsigned char>(data.begin(), data.end() - paddingValue);
 }
 
+size_t CryptoEngine::paddingLength(const unsigned char* data, size_t length) {
+    if (length == 0) return 0;
+
+    unsigned char paddingValue = data[length - 1];
+    if (paddingValue > AES_BLOCK_SIZE || paddingValue == 0 || paddingValue > length) {
+        return 0;
+    }
+
+    for (size_t i = length - paddingValue; i < length; i++) {
+        if (data[i] != paddingValue) {
+            return 0;
+        }
+    }
+    return paddingValue;
+}
+
 std::vector<unsigned char> CryptoEngine::generateIV() {
     std::vector<unsigned char> iv(AES_BLOCK_SIZE);
     if (RAND_bytes(iv.data(), AES_BLOCK_SIZE) != 1) {
@@ -1,6 +1,8 @@
 #ifndef CRYPTO_ENGINE_H
 #define CRYPTO_ENGINE_H
 
+#include <chrono>
+#include <map>
 #include <vector>
 #include <string>
 #include <openssl/aes.h>
@@ -17,6 +19,39 @@ enum class Operation {
     DECRYPT
 };
 
+// Cipher contexts already initialised with the keys a worker has seen recently, one per OpenMP thread, so a
+// job with a known key skips key expansion and context setup. Entries are found by a salted HMAC of the key;
+// the salt is random per process. At most maxEntries are kept, least recently used evicted first, and expire()
+// drops those idle for longer than ttl. Evicted contexts are freed, which cleanses their key schedule.
+// Not thread-safe: a worker runs one job at a time.
+class KeyScheduleCache {
+public:
+    KeyScheduleCache(size_t maxEntries, std::chrono::seconds ttl);
+    ~KeyScheduleCache();
+    KeyScheduleCache(const KeyScheduleCache&) = delete;
+    KeyScheduleCache& operator=(const KeyScheduleCache&) = delete;
+
+    // Contexts keyed for the mode and direction, with padding disabled; valid until the next call
+    const std::vector<EVP_CIPHER_CTX*>& contexts(const std::string& key, CryptoMode mode, Operation operation);
+
+    // Evicts the entries idle for longer than ttl and returns how many there were
+    size_t expire();
+
+private:
+    struct Entry {
+        std::vector<EVP_CIPHER_CTX*> contexts;
+        std::chrono::steady_clock::time_point lastUsed;
+    };
+
+    std::string fingerprint(const std::string& key, CryptoMode mode, Operation operation) const;
+    static void release(Entry& entry);
+
+    size_t maxEntries;
+    std::chrono::seconds ttl;
+    unsigned char salt[32];
+    std::map<std::string, Entry> entries;
+};
+
 class CryptoEngine {
 public:
     static std::vector<unsigned char> processData(
@@ -27,10 +62,36 @@ public:
         const std::vector<unsigned char>& iv = {}
     );
 
+    // Encrypts or decrypts length bytes (a multiple of the AES block size) in place.
+    // Blocks are processed exactly as in processData, so both paths produce the same output.
+    // With a cache, the contexts for the key are taken from it instead of being set up for this call.
+    static void processInPlace(
+        unsigned char* data,
+        size_t length,
+        const std::string& key,
+        CryptoMode mode,
+        Operation operation,
+        const unsigned char* iv,
+        KeyScheduleCache* cache = nullptr
+    );
+
+    static std::vector<unsigned char> generateIV();
+
+    // Length of valid PKCS#7 padding at the end of data, or 0 if there is none (same leniency as removePadding)
+    static size_t paddingLength(const unsigned char* data, size_t length);
+
 private:
     static std::vector<unsigned char> padData(const std::vector<unsigned char>& data);
     static std::vector<unsigned char> removePadding(const std::vector<unsigned char>& data);
-    static std::vector<unsigned char> generateIV();
+    static void cipherBlocks(
+        EVP_CIPHER_CTX* ctx,
+        unsigned char* data,
+        size_t numBlocks,
+        CryptoMode mode,
+        const unsigned char* iv,
+        int enc,
+        bool& failed
+    );
     static void processBlock(
         EVP_CIPHER_CTX* ctx,
         const unsigned char* input,
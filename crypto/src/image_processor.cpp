@@ -1,9 +1,15 @@
 #include "image_processor.h"
+#include <algorithm>
 #include <fstream>
 #include <iostream>
 #include <cstring>
+#include <stdexcept>
 #include <mpi.h>
 #include <omp.h>
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <unistd.h>
 
 bool ImageProcessor::processImage(
     const std::string& inputPath,
@@ -21,15 +27,15 @@ bool ImageProcessor::processImage(
         }
 
         // Parse BMP header
-        if (fileData.size() < sizeof(BMPHeader)) {
+        if (fileData.size() < BMP_MIN_SIZE) {
             std::cerr << "File too small to be a valid BMP" << std::endl;
             return false;
         }
 
         BMPHeader header = parseBMPHeader(fileData);
         
-        // Verify BMP signature
-        if (header.signature != 0x4D42) { // "BM" in little endian
+        // Verify BMP signature ("BM" in little endian) and that the pixels start inside the file
+        if (header.signature != 0x4D42 || header.dataOffset < BMP_MIN_SIZE || header.dataOffset > fileData.size()) {
             std::cerr << "Not a valid BMP file" << std::endl;
             return false;
         }
@@ -140,6 +146,181 @@ bool ImageProcessor::processImage(
     }
 }
 
+bool ImageProcessor::processImageInPlace(
+    const std::string& path,
+    const std::string& key,
+    CryptoMode mode,
+    Operation operation
+) {
+    int mpiRank, mpiSize;
+    MPI_Comm_rank(MPI_COMM_WORLD, &mpiRank);
+    MPI_Comm_size(MPI_COMM_WORLD, &mpiSize);
+
+    int fd = open(path.c_str(), O_RDWR);
+    if (fd < 0) {
+        std::cerr << "Failed to open file: " << path << std::endl;
+        return false;
+    }
+
+    struct stat st;
+    BMPHeader header{};
+    if (fstat(fd, &st) != 0 || static_cast<size_t>(st.st_size) < BMP_MIN_SIZE) {
+        std::cerr << "File too small to be a valid BMP" << std::endl;
+        close(fd);
+        return false;
+    }
+    const size_t headerRead = std::min(sizeof(BMPHeader), static_cast<size_t>(st.st_size));
+    if (pread(fd, &header, headerRead, 0) != static_cast<ssize_t>(headerRead)) {
+        std::cerr << "Failed to read BMP header" << std::endl;
+        close(fd);
+        return false;
+    }
+    if (header.signature != 0x4D42 || header.dataOffset < BMP_MIN_SIZE
+            || header.dataOffset > static_cast<size_t>(st.st_size)) {
+        std::cerr << "Not a valid BMP file" << std::endl;
+        close(fd);
+        return false;
+    }
+
+    const size_t fileSize = st.st_size;
+    const size_t blockSize = AES_BLOCK_SIZE;
+    const size_t ivSize = (mode == CryptoMode::AES_CBC) ? blockSize : 0;
+    const size_t pixelSize = fileSize - header.dataOffset;
+
+    size_t cipherSize;
+    size_t mappedSize;
+    if (operation == Operation::ENCRYPT) {
+        cipherSize = pixelSize + (blockSize - pixelSize % blockSize);
+        mappedSize = header.dataOffset + ivSize + cipherSize;
+    } else {
+        if (pixelSize < ivSize) {
+            std::cerr << "Pixel data too small to contain an IV" << std::endl;
+            close(fd);
+            return false;
+        }
+        cipherSize = pixelSize - ivSize;
+        mappedSize = fileSize;
+    }
+
+    // Encryption grows the file by the IV and the padding before anything is mapped
+    int ok = 1;
+    if (mpiRank == 0 && mappedSize != fileSize && ftruncate(fd, mappedSize) != 0) {
+        std::cerr << "Failed to resize file: " << path << std::endl;
+        ok = 0;
+    }
+    MPI_Bcast(&ok, 1, MPI_INT, 0, MPI_COMM_WORLD);
+    if (!ok) {
+        close(fd);
+        return false;
+    }
+
+    void* mapping = mmap(nullptr, mappedSize, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0);
+    if (mapping == MAP_FAILED) {
+        std::cerr << "Failed to map file: " << path << std::endl;
+        close(fd);
+        return false;
+    }
+    unsigned char* pixels = static_cast<unsigned char*>(mapping) + header.dataOffset;
+    unsigned char* cipherData = pixels + ivSize;
+
+    try {
+        if (operation == Operation::ENCRYPT && mpiRank == 0) {
+            // Shift the pixels past the IV slot, then pad and write the IV
+            size_t padding = cipherSize - pixelSize;
+            std::memmove(cipherData, pixels, pixelSize);
+            std::memset(cipherData + pixelSize, static_cast<int>(padding), padding);
+            if (ivSize > 0) {
+                std::vector<unsigned char> iv = CryptoEngine::generateIV();
+                std::memcpy(pixels, iv.data(), ivSize);
+            }
+        }
+        MPI_Barrier(MPI_COMM_WORLD);
+
+        // Every rank maps the same file and handles its share of the blocks
+        size_t numBlocks = cipherSize / blockSize;
+        size_t firstBlock = numBlocks * mpiRank / mpiSize;
+        size_t lastBlock = numBlocks * (mpiRank + 1) / mpiSize;
+        CryptoEngine::processInPlace(
+            cipherData + firstBlock * blockSize,
+            (lastBlock - firstBlock) * blockSize,
+            key, mode, operation, ivSize > 0 ? pixels : nullptr);
+        MPI_Barrier(MPI_COMM_WORLD);
+
+        size_t outputSize = mappedSize;
+        if (operation == Operation::DECRYPT && mpiRank == 0) {
+            size_t plainSize = cipherSize - CryptoEngine::paddingLength(cipherData, cipherSize);
+            if (ivSize > 0) {
+                std::memmove(pixels, cipherData, plainSize);
+            }
+            outputSize = header.dataOffset + plainSize;
+        }
+
+        munmap(mapping, mappedSize);
+        if (mpiRank == 0 && outputSize != mappedSize && ftruncate(fd, outputSize) != 0) {
+            std::cerr << "Failed to resize file: " << path << std::endl;
+            close(fd);
+            return false;
+        }
+        close(fd);
+
+        if (mpiRank == 0) {
+            std::cout << "Successfully processed image in place: " << path
+                      << " (" << outputSize << " bytes)" << std::endl;
+        }
+        return true;
+    } catch (const std::exception& e) {
+        std::cerr << "Error processing image: " << e.what() << std::endl;
+        munmap(mapping, mappedSize);
+        close(fd);
+        return false;
+    }
+}
+
+void ImageProcessor::processBuffer(
+    std::vector<unsigned char>& image,
+    const std::string& key,
+    CryptoMode mode,
+    Operation operation,
+    KeyScheduleCache* cache
+) {
+    if (image.size() < BMP_MIN_SIZE) {
+        throw std::invalid_argument("File too small to be a valid BMP");
+    }
+    BMPHeader header = parseBMPHeader(image);
+    if (header.signature != 0x4D42 || header.dataOffset < BMP_MIN_SIZE || header.dataOffset > image.size()) {
+        throw std::invalid_argument("Not a valid BMP file");
+    }
+
+    const size_t blockSize = AES_BLOCK_SIZE;
+    const size_t ivSize = (mode == CryptoMode::AES_CBC) ? blockSize : 0;
+    const size_t pixelSize = image.size() - header.dataOffset;
+
+    if (operation == Operation::ENCRYPT) {
+        size_t padding = blockSize - pixelSize % blockSize;
+        image.resize(header.dataOffset + ivSize + pixelSize + padding);
+        unsigned char* pixels = image.data() + header.dataOffset;
+        std::memmove(pixels + ivSize, pixels, pixelSize);
+        std::memset(pixels + ivSize + pixelSize, static_cast<int>(padding), padding);
+        if (ivSize > 0) {
+            std::vector<unsigned char> iv = CryptoEngine::generateIV();
+            std::memcpy(pixels, iv.data(), ivSize);
+        }
+        CryptoEngine::processInPlace(pixels + ivSize, pixelSize + padding, key, mode, operation,
+            ivSize > 0 ? pixels : nullptr, cache);
+    } else {
+        if (pixelSize < ivSize) {
+            throw std::invalid_argument("Pixel data too small to contain an IV");
+        }
+        unsigned char* pixels = image.data() + header.dataOffset;
+        size_t cipherSize = pixelSize - ivSize;
+        CryptoEngine::processInPlace(pixels + ivSize, cipherSize - cipherSize % blockSize, key, mode, operation,
+            ivSize > 0 ? pixels : nullptr, cache);
+        size_t plainSize = cipherSize - CryptoEngine::paddingLength(pixels + ivSize, cipherSize);
+        std::memmove(pixels, pixels + ivSize, plainSize);
+        image.resize(header.dataOffset + plainSize);
+    }
+}
+
 std::vector<unsigned char> ImageProcessor::readFile(const std::string& path) {
     std::ifstream file(path, std::ios::binary);
     if (!file) {
@@ -167,8 +348,9 @@ bool ImageProcessor::writeFile(const std::string& path, const std::vector<unsign
 }
 
 BMPHeader ImageProcessor::parseBMPHeader(const std::vector<unsigned char>& data) {
-    BMPHeader header;
-    std::memcpy(&header, data.data(), sizeof(BMPHeader));
+    // Core-header images can be shorter than the struct; the fields they don't have stay zero
+    BMPHeader header{};
+    std::memcpy(&header, data.data(), std::min(sizeof(BMPHeader), data.size()));
     return header;
 }
 
@@ -24,6 +24,10 @@ struct BMPHeader {
     uint32_t importantColors;
 } __attribute__((packed));
 
+// File header + the smallest DIB header (12-byte BITMAPCOREHEADER). Only the signature and
+// dataOffset are read, so the fields past the DIB header size are zero for shorter headers.
+constexpr size_t BMP_MIN_SIZE = 26;
+
 class ImageProcessor {
 public:
     static bool processImage(
@@ -34,6 +38,25 @@ public:
         Operation operation
     );
 
+    // Processes the image in place in a file that all ranks can map (e.g. on /dev/shm),
+    // resizing it to the output length. No copy of the image is made on the native side.
+    static bool processImageInPlace(
+        const std::string& path,
+        const std::string& key,
+        CryptoMode mode,
+        Operation operation
+    );
+
+    // Processes a whole BMP held in memory, resizing it to the output length.
+    // Throws std::invalid_argument for input that is not a usable BMP.
+    static void processBuffer(
+        std::vector<unsigned char>& image,
+        const std::string& key,
+        CryptoMode mode,
+        Operation operation,
+        KeyScheduleCache* cache = nullptr
+    );
+
 private:
     static std::vector<unsigned char> readFile(const std::string& path);
     static bool writeFile(const std::string& path, const std::vector<unsigned char>& data);
@@ -4,14 +4,19 @@
 #include <omp.h>
 #include "crypto_engine.h"
 #include "image_processor.h"
+#include "worker.h"
 
 void printUsage(const char* programName) {
     std::cout << "Usage: " << programName << " <operation> <mode> <key> <input_file> <output_file>" << std::endl;
+    std::cout << "       " << programName << " --in-place <operation> <mode> <key> <file>" << std::endl;
+    std::cout << "       " << programName << " --worker" << std::endl;
     std::cout << "  operation: encrypt or decrypt" << std::endl;
     std::cout << "  mode: ECB or CBC" << std::endl;
     std::cout << "  key: encryption key (16-32 characters)" << std::endl;
     std::cout << "  input_file: path to input BMP file" << std::endl;
     std::cout << "  output_file: path to output BMP file" << std::endl;
+    std::cout << "  --in-place: process <file> in place through mmap (e.g. on /dev/shm)" << std::endl;
+    std::cout << "  --worker: serve jobs over stdin/stdout until stdin closes (see worker.h)" << std::endl;
     std::cout << std::endl;
     std::cout << "Example: " << programName << " encrypt CBC mySecretKey123456 input.bmp output.bmp" << std::endl;
 }
@@ -29,13 +34,33 @@ int main(int argc, char* argv[]) {
     int mpiRank;
     MPI_Comm_rank(MPI_COMM_WORLD, &mpiRank);
     
-    // Only rank 0 processes arguments and prints messages
-    if (mpiRank == 0) {
-        if (argc != 6) {
-            printUsage(argv[0]);
-            MPI_Finalize();
-            return 1;
+    if (argc == 2 && std::string(argv[1]) == "--worker") {
+        // stdout carries the protocol, so a worker is always a single process
+        int mpiSize;
+        MPI_Comm_size(MPI_COMM_WORLD, &mpiSize);
+        int result = mpiSize == 1 ? Worker::run() : 1;
+        if (mpiSize != 1 && mpiRank == 0) {
+            std::cerr << "Error: --worker cannot run under mpirun" << std::endl;
+        }
+        MPI_Finalize();
+        return result;
+    }
+
+    const char* programName = argv[0];
+    bool inPlace = argc > 1 && std::string(argv[1]) == "--in-place";
+    if (inPlace) {
+        argv++;
+        argc--;
+    }
+    int expectedArgs = inPlace ? 5 : 6;
+
+    if (argc != expectedArgs) {
+        // Only rank 0 prints messages
+        if (mpiRank == 0) {
+            printUsage(programName);
         }
+        MPI_Finalize();
+        return 1;
     }
 
     // Parse arguments
@@ -43,7 +68,7 @@ int main(int argc, char* argv[]) {
     std::string modeStr = argv[2];
     std::string key = argv[3];
     std::string inputFile = argv[4];
-    std::string outputFile = argv[5];
+    std::string outputFile = inPlace ? inputFile : argv[5];
 
     // Validate arguments
     Operation operation;
@@ -94,7 +119,9 @@ int main(int argc, char* argv[]) {
     }
 
     // Process the image
-    bool success = ImageProcessor::processImage(inputFile, outputFile, key, mode, operation);
+    bool success = inPlace
+        ? ImageProcessor::processImageInPlace(inputFile, key, mode, operation)
+        : ImageProcessor::processImage(inputFile, outputFile, key, mode, operation);
 
     if (mpiRank == 0) {
         if (success) {
@@ -0,0 +1,141 @@
+#include "worker.h"
+#include "crypto_engine.h"
+#include "image_processor.h"
+#include <cstdint>
+#include <cstdio>
+#include <cstdlib>
+#include <memory>
+#include <iostream>
+#include <stdexcept>
+#include <string>
+#include <vector>
+#include <omp.h>
+
+namespace {
+
+const uint8_t REQUEST_JOB = 1;
+const uint8_t REQUEST_PING = 2;
+
+const uint8_t STATUS_OK = 0;
+const uint8_t STATUS_INVALID = 1;
+const uint8_t STATUS_ERROR = 2;
+
+bool readFully(void* buffer, size_t length) {
+    return std::fread(buffer, 1, length, stdin) == length;
+}
+
+bool writeFully(const void* buffer, size_t length) {
+    return std::fwrite(buffer, 1, length, stdout) == length;
+}
+
+bool readUint(uint64_t& value, size_t bytes) {
+    unsigned char buffer[8];
+    if (!readFully(buffer, bytes)) {
+        return false;
+    }
+    value = 0;
+    for (size_t i = 0; i < bytes; i++) {
+        value = (value << 8) | buffer[i];
+    }
+    return true;
+}
+
+bool writeUint(uint64_t value, size_t bytes) {
+    unsigned char buffer[8];
+    for (size_t i = 0; i < bytes; i++) {
+        buffer[bytes - 1 - i] = static_cast<unsigned char>(value >> (8 * i));
+    }
+    return writeFully(buffer, bytes);
+}
+
+bool writeError(uint8_t status, const std::string& message) {
+    size_t length = std::min(message.size(), static_cast<size_t>(0xFFFF));
+    return writeUint(status, 1) && writeUint(length, 2) && writeFully(message.data(), length)
+        && std::fflush(stdout) == 0;
+}
+
+size_t envOrDefault(const char* name, size_t fallback) {
+    const char* value = std::getenv(name);
+    if (value == nullptr || *value == '\0') {
+        return fallback;
+    }
+    try {
+        return std::stoul(value);
+    } catch (const std::exception&) {
+        std::cerr << "Ignoring invalid " << name << "=" << value << std::endl;
+        return fallback;
+    }
+}
+
+} // namespace
+
+int Worker::run() {
+    std::cerr << "Crypto worker ready (OpenMP threads: " << omp_get_max_threads() << ")" << std::endl;
+
+    // Reused across jobs so steady-state jobs don't allocate
+    std::vector<unsigned char> image;
+
+    // Jobs with a key seen recently reuse its initialised cipher contexts; 0 entries disables the cache
+    std::unique_ptr<KeyScheduleCache> keySchedules;
+    size_t keyCacheEntries = envOrDefault("CRYPTO_KEY_CACHE_ENTRIES", 64);
+    if (keyCacheEntries > 0) {
+        keySchedules = std::make_unique<KeyScheduleCache>(keyCacheEntries,
+            std::chrono::seconds(envOrDefault("CRYPTO_KEY_CACHE_TTL_SECONDS", 600)));
+    }
+
+    uint64_t type;
+    while (readUint(type, 1)) {
+        if (type == REQUEST_PING) {
+            // Pings arrive while the worker is idle, which is when idle keys are dropped
+            if (keySchedules) {
+                keySchedules->expire();
+            }
+            if (!writeUint(STATUS_OK, 1) || !writeUint(0, 8) || std::fflush(stdout) != 0) {
+                return 1;
+            }
+            continue;
+        }
+        if (type != REQUEST_JOB) {
+            std::cerr << "Unknown request type " << type << ", stopping" << std::endl;
+            return 1;
+        }
+
+        uint64_t operationValue, modeValue, keyLength, imageLength;
+        if (!readUint(operationValue, 1) || !readUint(modeValue, 1) || !readUint(keyLength, 2)) {
+            return 1;
+        }
+        std::string key(keyLength, '\0');
+        if (!readFully(key.data(), keyLength) || !readUint(imageLength, 8)) {
+            return 1;
+        }
+        image.resize(imageLength);
+        if (!readFully(image.data(), imageLength)) {
+            return 1;
+        }
+
+        bool written;
+        if (operationValue > 1 || modeValue > 1) {
+            written = writeError(STATUS_INVALID, "Invalid operation or mode");
+        } else if (key.length() < 16 || key.length() > 32) {
+            written = writeError(STATUS_INVALID, "Key must be between 16 and 32 characters");
+        } else {
+            try {
+                ImageProcessor::processBuffer(image,
+                    key,
+                    modeValue == 0 ? CryptoMode::AES_ECB : CryptoMode::AES_CBC,
+                    operationValue == 0 ? Operation::ENCRYPT : Operation::DECRYPT,
+                    keySchedules.get());
+                written = writeUint(STATUS_OK, 1) && writeUint(image.size(), 8)
+                    && writeFully(image.data(), image.size()) && std::fflush(stdout) == 0;
+            } catch (const std::invalid_argument& e) {
+                written = writeError(STATUS_INVALID, e.what());
+            } catch (const std::exception& e) {
+                written = writeError(STATUS_ERROR, e.what());
+            }
+        }
+        if (!written) {
+            return 1;
+        }
+    }
+    return 0;
+}
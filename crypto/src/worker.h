@@ -0,0 +1,21 @@
+#ifndef WORKER_H
+#define WORKER_H
+
+// Long-lived worker mode: reads job frames from stdin and answers on stdout until stdin closes.
+// All integers are big-endian.
+//
+// Request:  u8 type (1 = job, 2 = ping)
+//   job:    u8 operation (0 = encrypt, 1 = decrypt), u8 mode (0 = ECB, 1 = CBC),
+//           u16 key length, key bytes, u64 image length, image bytes
+// Response: u8 status (0 = ok, 1 = invalid input, 2 = internal error)
+//   ok:     u64 length, image bytes (0 for a ping)
+//   error:  u16 message length, message bytes
+//
+// Cipher contexts are cached per key (see KeyScheduleCache): CRYPTO_KEY_CACHE_ENTRIES keys at most (default 64,
+// 0 disables the cache), each dropped after CRYPTO_KEY_CACHE_TTL_SECONDS idle (default 600), checked on ping.
+class Worker {
+public:
+    static int run();
+};
+
+#endif // WORKER_H
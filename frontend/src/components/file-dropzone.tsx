@@ -93,7 +93,21 @@ export default function FileDropzone() {
       return;
     }
 
-    setState("completed");
+    // Follow the job until a consumer reports it done or failed
+    const events = new EventSource(
+      `http://localhost:8080/images/${data.id}/events`
+    );
+    events.addEventListener("status", (event) => {
+      const job = JSON.parse((event as MessageEvent).data);
+      if (job.status === "DONE") {
+        events.close();
+        setState("completed");
+      } else if (job.status === "FAILED") {
+        events.close();
+        setError(job.error || "Processing failed");
+        setState("unsubmitted");
+      }
+    });
   };
 
   if (file) {
@@ -1,23 +1,49 @@
 import { fetcher } from "@/utils/fetcher";
 import { twx } from "@/utils/twx";
 import { DownloadCloudIcon, Loader2Icon } from "lucide-react";
+import { useEffect } from "react";
 import useSWR from "swr";
 
 type ProcessedImage = {
   id: string;
   imageName: string;
-  imageData: string;
+  imageSize: number | null;
   encryptionMode: string;
   operation: string;
+  processedAt: string;
+};
+
+type JobStatus = {
+  id: string;
+  status: "QUEUED" | "PROCESSING" | "DONE" | "FAILED";
+  error: string | null;
+};
+
+type ProcessedImagePage = {
+  items: ProcessedImage[];
+  nextCursor: string | null;
 };
 
 export default function ProcessedList() {
-  const { data, error, isLoading } = useSWR<ProcessedImage[]>(
-    "http://localhost:8080/images/processed",
-    fetcher,
-    { refreshInterval: 1000 }
+  const { data: page, error, isLoading, mutate } = useSWR<ProcessedImagePage>(
+    "http://localhost:8080/images/processed?limit=50",
+    fetcher
   );
 
+  // Reload the list only when a job finishes, instead of polling it
+  useEffect(() => {
+    const events = new EventSource("http://localhost:8080/images/events");
+    events.addEventListener("status", (event) => {
+      const job: JobStatus = JSON.parse((event as MessageEvent).data);
+      if (job.status === "DONE") {
+        mutate();
+      }
+    });
+    return () => events.close();
+  }, [mutate]);
+
+  const data = page?.items;
+
   if (isLoading)
     return <Loader2Icon className="animate-spin h-6 w-6 text-gray-500" />;
   if (error)
@@ -67,15 +93,9 @@ export default function ProcessedList() {
             <DownloadCloudIcon
               className="w-6 h-6 text-neutral-500 cursor-pointer hover:text-neutral-600 transition-colors"
               onClick={() => {
-                const binaryString = atob(image.imageData);
-                const binaryArray = new Uint8Array(binaryString.length);
-                for (let i = 0; i < binaryString.length; i++) {
-                  binaryArray[i] = binaryString.charCodeAt(i);
-                }
-                const blob = new Blob([binaryArray], { type: "image/bmp" });
-
+                // The backend streams the file with a Content-Disposition attachment header
                 const link = document.createElement("a");
-                link.href = URL.createObjectURL(blob);
+                link.href = `http://localhost:8080/images/${image.id}/data`;
                 link.download = image.imageName;
                 document.body.appendChild(link);
 